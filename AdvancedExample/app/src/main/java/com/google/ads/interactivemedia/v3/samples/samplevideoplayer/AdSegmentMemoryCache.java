@@ -0,0 +1,311 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.annotation.SuppressLint;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory LRU cache of media segments held in direct ByteBuffers, placed in front of the
+ * network so that ad creatives stitched into many ad breaks are only downloaded once.
+ *
+ * <p>Only ad segments are admitted, so that content segments do not evict creatives between
+ * breaks. Segments are recognized by a pattern in their URL, such as the path of the creative
+ * server. They are not recognized by when they load, as segments load well ahead of the playhead
+ * and so of the ad break events.
+ *
+ * <p>Cache keys drop the fragment and the known session and tracking query parameters of the
+ * segment URI, which differ between breaks for the same creative. Other query parameters are kept,
+ * as they may select the media.
+ */
+@SuppressLint("UnsafeOptInUsageError")
+/* @SuppressLint is needed for new media3 APIs. */
+public class AdSegmentMemoryCache {
+
+  // Query parameters that identify the session or the viewer rather than the media. Read by
+  // loading threads, so never modified.
+  private static final Set<String> SESSION_QUERY_PARAMETERS =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(
+                  "sid", "sessionid", "session_id", "token", "auth", "expires", "hdnts", "hdnea",
+                  "correlator", "ppid", "rdid", "idtype", "is_lat", "cust_params")));
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+
+  // Access-ordered, so iteration starts at the least recently used entry.
+  private final LinkedHashMap<String, ByteBuffer> entries =
+      new LinkedHashMap<>(
+          /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+  private final Pattern adSegmentPattern;
+  private long cachedBytes;
+
+  private long hitCount;
+  private long missCount;
+  private long bytesSaved;
+
+  // Counters for the current ad break.
+  private long adBreakHitCount;
+  private long adBreakMissCount;
+  private long adBreakBytesSaved;
+
+  /**
+   * Creates a new AdSegmentMemoryCache.
+   *
+   * @param maxBytes hard cap on the total size of cached segments, in bytes.
+   * @param adSegmentPattern pattern found in the URLs of ad segments, and in no others.
+   */
+  public AdSegmentMemoryCache(long maxBytes, Pattern adSegmentPattern) {
+    this.maxBytes = maxBytes;
+    this.adSegmentPattern = adSegmentPattern;
+    // Keep a single large segment from flushing the whole cache.
+    maxEntryBytes = maxBytes / 4;
+  }
+
+  /** Returns a DataSource.Factory that serves cached segments and fills the cache from upstream. */
+  public DataSource.Factory createDataSourceFactory(DataSource.Factory upstreamFactory) {
+    return () -> new MemoryCacheDataSource(upstreamFactory.createDataSource());
+  }
+
+  /** Resets the per-break counters. Call when an ad break starts. */
+  public synchronized void onAdBreakStarted() {
+    adBreakHitCount = 0;
+    adBreakMissCount = 0;
+    adBreakBytesSaved = 0;
+  }
+
+  /** Returns a summary of the hit ratio and bytes saved since the ad break started. */
+  public synchronized String getAdBreakStats() {
+    return String.format(
+        Locale.US,
+        "Ad break segment cache: %.0f%% hit ratio, %d KB saved",
+        getRatio(adBreakHitCount, adBreakMissCount) * 100,
+        adBreakBytesSaved / 1024);
+  }
+
+  public synchronized double getHitRatio() {
+    return getRatio(hitCount, missCount);
+  }
+
+  public synchronized long getBytesSaved() {
+    return bytesSaved;
+  }
+
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    cachedBytes = 0;
+  }
+
+  @Nullable
+  private synchronized ByteBuffer get(String key) {
+    ByteBuffer buffer = entries.get(key);
+    if (buffer != null) {
+      hitCount++;
+      adBreakHitCount++;
+      bytesSaved += buffer.limit();
+      adBreakBytesSaved += buffer.limit();
+      // Each reader gets its own position over the shared contents.
+      return buffer.asReadOnlyBuffer();
+    }
+    missCount++;
+    adBreakMissCount++;
+    return null;
+  }
+
+  private synchronized void put(String key, byte[] data, int length) {
+    if (length > maxEntryBytes || entries.containsKey(key)) {
+      return;
+    }
+    Iterator<ByteBuffer> iterator = entries.values().iterator();
+    while (cachedBytes + length > maxBytes && iterator.hasNext()) {
+      cachedBytes -= iterator.next().limit();
+      iterator.remove();
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+    buffer.put(data, 0, length);
+    buffer.flip();
+    entries.put(key, buffer);
+    cachedBytes += length;
+  }
+
+  private static double getRatio(long hits, long misses) {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  private boolean isCacheable(DataSpec dataSpec) {
+    // Only whole segments are cached. Manifests are refreshed on every reload.
+    String path = dataSpec.uri.getPath();
+    if (dataSpec.position != 0
+        || dataSpec.length != C.LENGTH_UNSET
+        || path == null
+        || path.endsWith(".m3u8")
+        || path.endsWith(".mpd")) {
+      return false;
+    }
+    return adSegmentPattern.matcher(dataSpec.uri.toString()).find();
+  }
+
+  private static String getCacheKey(Uri uri) {
+    Uri.Builder builder = uri.buildUpon().clearQuery().fragment(null);
+    for (String name : uri.getQueryParameterNames()) {
+      if (SESSION_QUERY_PARAMETERS.contains(name.toLowerCase(Locale.US))) {
+        continue;
+      }
+      for (String value : uri.getQueryParameters(name)) {
+        builder.appendQueryParameter(name, value);
+      }
+    }
+    return builder.build().toString();
+  }
+
+  /** Serves a segment from memory, or reads it from upstream while copying it into the cache. */
+  private final class MemoryCacheDataSource implements DataSource {
+
+    private final DataSource upstream;
+
+    @Nullable private Uri uri;
+    @Nullable private String key;
+    @Nullable private ByteBuffer cachedData;
+    private boolean readingUpstream;
+
+    // Copy of the upstream data, or null if the segment is not being cached.
+    @Nullable private byte[] copyBuffer;
+    private int copyLength;
+    private long upstreamLength;
+
+    MemoryCacheDataSource(DataSource upstream) {
+      this.upstream = upstream;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      uri = dataSpec.uri;
+      if (isCacheable(dataSpec)) {
+        key = getCacheKey(dataSpec.uri);
+        cachedData = get(key);
+        if (cachedData != null) {
+          return cachedData.remaining();
+        }
+      }
+      long length = upstream.open(dataSpec);
+      readingUpstream = true;
+      upstreamLength = length;
+      if (key != null && length != C.LENGTH_UNSET && length <= maxEntryBytes) {
+        copyBuffer = new byte[(int) length];
+      } else if (key != null && length == C.LENGTH_UNSET) {
+        copyBuffer = new byte[64 * 1024];
+      }
+      return length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (cachedData != null) {
+        if (!cachedData.hasRemaining()) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        int bytesRead = Math.min(length, cachedData.remaining());
+        cachedData.get(buffer, offset, bytesRead);
+        return bytesRead;
+      }
+
+      int bytesRead = upstream.read(buffer, offset, length);
+      if (copyBuffer == null) {
+        return bytesRead;
+      }
+      if (bytesRead != C.RESULT_END_OF_INPUT) {
+        copy(buffer, offset, bytesRead);
+      }
+      // Extractors may stop reading at the known length without seeing the end of input.
+      if (copyBuffer != null
+          && (bytesRead == C.RESULT_END_OF_INPUT || copyLength == upstreamLength)) {
+        put(key, copyBuffer, copyLength);
+        copyBuffer = null;
+      }
+      return bytesRead;
+    }
+
+    private void copy(byte[] buffer, int offset, int length) {
+      int requiredLength = copyLength + length;
+      if (requiredLength > maxEntryBytes) {
+        copyBuffer = null; // Too large to cache.
+        return;
+      }
+      if (requiredLength > copyBuffer.length) {
+        long newLength = Math.max(requiredLength, copyBuffer.length * 2L);
+        copyBuffer = Arrays.copyOf(copyBuffer, (int) Math.min(maxEntryBytes, newLength));
+      }
+      System.arraycopy(buffer, offset, copyBuffer, copyLength, length);
+      copyLength = requiredLength;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return readingUpstream
+          ? upstream.getResponseHeaders()
+          : DataSource.super.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+      uri = null;
+      key = null;
+      cachedData = null;
+      copyBuffer = null;
+      copyLength = 0;
+      upstreamLength = C.LENGTH_UNSET;
+      if (readingUpstream) {
+        readingUpstream = false;
+        upstream.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * A background priority thread for app work that does not touch views, such as writing logs and
+ * cache bookkeeping.
+ *
+ * <p>It is kept apart from the {@link PlaybackThread}, which runs at audio priority, so that app
+ * work never delays the playback loop or runs ahead of other apps at raised priority.
+ */
+public final class BackgroundThread {
+
+  private static Handler handler;
+
+  /** Returns a handler to post work to the thread, starting the thread if needed. */
+  public static synchronized Handler getHandler() {
+    if (handler == null) {
+      HandlerThread thread =
+          new HandlerThread("BackgroundThread", Process.THREAD_PRIORITY_BACKGROUND);
+      thread.start();
+      handler = new Handler(thread.getLooper());
+    }
+    return handler;
+  }
+
+  private BackgroundThread() {}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseLongArray;
+import androidx.media3.common.Format;
+import androidx.media3.common.util.NetworkTypeObserver;
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Saves the bandwidth estimate per network type across app sessions, and seeds new players with
+ * it, so that adaptive bitrate selection starts at the right rendition instead of ramping up from
+ * a conservative default.
+ *
+ * <p>Only estimates backed by transfers the meter has measured are saved, each for the network type
+ * it was measured on. A session that transferred nothing leaves the saved estimates as they were.
+ *
+ * <p>Must be used on the main thread.
+ */
+@SuppressLint("UnsafeOptInUsageError")
+/* @SuppressLint is needed for new media3 APIs. */
+public class BandwidthEstimateStore {
+
+  private static final String PREFERENCES_NAME = "bandwidth_estimates";
+  private static final String KEY_PREFIX = "network_type_";
+
+  private final SharedPreferences preferences;
+  private final NetworkTypeObserver networkTypeObserver;
+  private final DefaultBandwidthMeter bandwidthMeter;
+  // The latest measured estimate per network type, not yet saved.
+  private final SparseLongArray measuredEstimates = new SparseLongArray();
+
+  // Startup video bitrates, split by whether a saved estimate was available.
+  private int savedStartupCount;
+  private long savedStartupBitrateSum;
+  private int defaultStartupCount;
+  private long defaultStartupBitrateSum;
+
+  public BandwidthEstimateStore(Context context) {
+    preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    networkTypeObserver = NetworkTypeObserver.getInstance(context);
+
+    DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder(context);
+    for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+      if (entry.getKey().startsWith(KEY_PREFIX) && entry.getValue() instanceof Long) {
+        int networkType = Integer.parseInt(entry.getKey().substring(KEY_PREFIX.length()));
+        builder.setInitialBitrateEstimate(networkType, (Long) entry.getValue());
+      }
+    }
+    bandwidthMeter = builder.build();
+    bandwidthMeter.addEventListener(
+        new Handler(Looper.getMainLooper()),
+        (elapsedMs, bytesTransferred, bitrateEstimate) ->
+            measuredEstimates.put(networkTypeObserver.getNetworkType(), bitrateEstimate));
+  }
+
+  /** Returns the bandwidth meter to build players with. Shared by every player. */
+  public DefaultBandwidthMeter getBandwidthMeter() {
+    return bandwidthMeter;
+  }
+
+  /** Returns whether an estimate has been saved for the current network type. */
+  public boolean hasSavedEstimate() {
+    return preferences.contains(KEY_PREFIX + networkTypeObserver.getNetworkType());
+  }
+
+  /** Saves the estimates measured since the last save, if any. */
+  public void save() {
+    if (measuredEstimates.size() == 0) {
+      return;
+    }
+    SharedPreferences.Editor editor = preferences.edit();
+    for (int i = 0; i < measuredEstimates.size(); i++) {
+      editor.putLong(KEY_PREFIX + measuredEstimates.keyAt(i), measuredEstimates.valueAt(i));
+    }
+    editor.apply();
+    measuredEstimates.clear();
+  }
+
+  /**
+   * Records the bitrate of the first video format played in a session.
+   *
+   * @param bitrate the bitrate in bits per second, or {@link Format#NO_VALUE}.
+   * @param hadSavedEstimate whether the player started with a saved estimate.
+   */
+  public void onStartupBitrate(int bitrate, boolean hadSavedEstimate) {
+    if (bitrate == Format.NO_VALUE) {
+      return;
+    }
+    if (hadSavedEstimate) {
+      savedStartupCount++;
+      savedStartupBitrateSum += bitrate;
+    } else {
+      defaultStartupCount++;
+      defaultStartupBitrateSum += bitrate;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "Startup video bitrate: %d kbps with saved estimate (%d sessions), %d kbps without (%d"
+            + " sessions)",
+        savedStartupCount == 0 ? 0 : savedStartupBitrateSum / savedStartupCount / 1000,
+        savedStartupCount,
+        defaultStartupCount == 0 ? 0 : defaultStartupBitrateSum / defaultStartupCount / 1000,
+        defaultStartupCount);
+  }
+}
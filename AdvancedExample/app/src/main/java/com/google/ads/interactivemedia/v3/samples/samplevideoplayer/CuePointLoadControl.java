@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.annotation.SuppressLint;
+import androidx.media3.common.util.Util;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import java.util.Locale;
+
+/**
+ * A LoadControl that keeps loading ahead of upcoming ad breaks, so the switch to ad segments
+ * served from a different origin is already buffered when playback reaches the cue point.
+ *
+ * <p>Away from ad breaks it behaves like {@link DefaultLoadControl}. Rebuffers are counted
+ * separately for the ad-aware and the default policy, so the two can be compared by toggling
+ * {@link #setAdAwareBuffering}.
+ */
+@SuppressLint("UnsafeOptInUsageError")
+/* @SuppressLint is needed for new media3 APIs. */
+public class CuePointLoadControl extends DefaultLoadControl {
+
+  // Start growing the buffer when an ad break is this close to the playhead.
+  private static final long LOOKAHEAD_MS = 30_000;
+  // How far into the ad break to buffer before it starts.
+  private static final long AD_PREBUFFER_MS = 10_000;
+  // Upper bound on the memory the extra buffering may use.
+  private static final long MAX_BOOST_BYTES = 64 * 1024 * 1024;
+  // Rebuffers this close to an ad break start or end count as ad boundary rebuffers.
+  private static final long BOUNDARY_TOLERANCE_MS = 2_000;
+
+  // Written on the main thread and read on the playback thread.
+  private volatile long[] adBreakStartTimesMs = new long[0];
+  private volatile long[] adBreakEndTimesMs = new long[0];
+  private volatile long streamTimeOffsetMs;
+  private volatile boolean adAwareBuffering = true;
+
+  // Indexed by policy: 0 for default, 1 for ad-aware.
+  private final int[] rebufferCounts = new int[2];
+  private final int[] adBoundaryRebufferCounts = new int[2];
+
+  /**
+   * Sets the ad breaks of the current stream, in stream time.
+   *
+   * @param startTimesMs start times of the ad breaks, in ascending order.
+   * @param endTimesMs end times of the ad breaks, in the same order.
+   */
+  public void setAdBreaks(long[] startTimesMs, long[] endTimesMs) {
+    adBreakEndTimesMs = endTimesMs;
+    adBreakStartTimesMs = startTimesMs;
+  }
+
+  /**
+   * Sets the offset to add to period positions to get stream time, which is non-zero for live
+   * streams.
+   */
+  public void setStreamTimeOffsetMs(long streamTimeOffsetMs) {
+    this.streamTimeOffsetMs = streamTimeOffsetMs;
+  }
+
+  /** Enables or disables buffering ahead of ad breaks. Enabled by default. */
+  public void setAdAwareBuffering(boolean adAwareBuffering) {
+    this.adAwareBuffering = adAwareBuffering;
+  }
+
+  @Override
+  public boolean shouldContinueLoading(Parameters parameters) {
+    boolean shouldContinueLoading = super.shouldContinueLoading(parameters);
+    if (shouldContinueLoading || !adAwareBuffering) {
+      return shouldContinueLoading;
+    }
+
+    long positionMs = Util.usToMs(parameters.playbackPositionUs) + streamTimeOffsetMs;
+    long msToAdBreak = getNextAdBreakStartMs(positionMs) - positionMs;
+    if (msToAdBreak < 0 || msToAdBreak > LOOKAHEAD_MS) {
+      return false;
+    }
+    return Util.usToMs(parameters.bufferedDurationUs) < msToAdBreak + AD_PREBUFFER_MS
+        && getAllocator().getTotalBytesAllocated() < MAX_BOOST_BYTES;
+  }
+
+  /**
+   * Records a rebuffer. Call on the main thread.
+   *
+   * @param streamTimeMs stream time at which playback stalled.
+   */
+  public void onRebuffer(long streamTimeMs) {
+    int policy = adAwareBuffering ? 1 : 0;
+    rebufferCounts[policy]++;
+    if (isNearAdBoundary(streamTimeMs)) {
+      adBoundaryRebufferCounts[policy]++;
+    }
+  }
+
+  public int getAdBoundaryRebufferCount(boolean adAware) {
+    return adBoundaryRebufferCounts[adAware ? 1 : 0];
+  }
+
+  public int getRebufferCount(boolean adAware) {
+    return rebufferCounts[adAware ? 1 : 0];
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "Rebuffers at ad boundaries: %d of %d (ad-aware), %d of %d (default)",
+        adBoundaryRebufferCounts[1],
+        rebufferCounts[1],
+        adBoundaryRebufferCounts[0],
+        rebufferCounts[0]);
+  }
+
+  // Returns the start of the first ad break after the position, or -1 if there is none.
+  private long getNextAdBreakStartMs(long positionMs) {
+    long[] startTimesMs = adBreakStartTimesMs;
+    int low = 0;
+    int high = startTimesMs.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (startTimesMs[mid] <= positionMs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low < startTimesMs.length ? startTimesMs[low] : -1;
+  }
+
+  private boolean isNearAdBoundary(long streamTimeMs) {
+    long[] startTimesMs = adBreakStartTimesMs;
+    long[] endTimesMs = adBreakEndTimesMs;
+    for (int i = 0; i < startTimesMs.length && i < endTimesMs.length; i++) {
+      if (Math.abs(startTimesMs[i] - streamTimeMs) <= BOUNDARY_TOLERANCE_MS
+          || Math.abs(endTimesMs[i] - streamTimeMs) <= BOUNDARY_TOLERANCE_MS) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
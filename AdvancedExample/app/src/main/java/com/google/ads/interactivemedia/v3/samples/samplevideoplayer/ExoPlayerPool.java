@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.annotation.SuppressLint;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.media3.exoplayer.ExoPlayer;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Keeps built ExoPlayer instances alive between streams, so a stream switch only swaps the
+ * MediaSource instead of tearing down and rebuilding the player, its renderers and codecs.
+ */
+@SuppressLint("UnsafeOptInUsageError")
+/* @SuppressLint is needed for new media3 APIs. */
+public class ExoPlayerPool {
+
+  private static final String LOG_TAG = "ExoPlayerPool";
+
+  private final int maxIdlePlayers;
+  private final ArrayDeque<ExoPlayer> idlePlayers;
+
+  // Cost of building a player from scratch, which is what every stream switch paid before.
+  private int coldBuildCount;
+  private long coldBuildTimeNs;
+  private long coldBuildBytes;
+
+  // Cost of stream switches served by a pooled player.
+  private int warmSwitchCount;
+  private long warmSwitchTimeNs;
+
+  /**
+   * Creates a new ExoPlayerPool.
+   *
+   * @param maxIdlePlayers maximum number of unused players kept alive.
+   */
+  public ExoPlayerPool(int maxIdlePlayers) {
+    this.maxIdlePlayers = maxIdlePlayers;
+    idlePlayers = new ArrayDeque<>();
+  }
+
+  /**
+   * Returns an idle player from the pool, or builds a new one if the pool is empty. Players built
+   * with different settings must not share a pool.
+   *
+   * @param playerFactory builds a new player.
+   */
+  public ExoPlayer acquire(Supplier<ExoPlayer> playerFactory) {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    ExoPlayer player = idlePlayers.poll();
+    if (player != null) {
+      onWarmSwitch(SystemClock.elapsedRealtimeNanos() - startNs);
+      return player;
+    }
+
+    long startBytes = getUsedMemoryBytes();
+    player = playerFactory.get();
+    coldBuildTimeNs += SystemClock.elapsedRealtimeNanos() - startNs;
+    coldBuildBytes += Math.max(0, getUsedMemoryBytes() - startBytes);
+    coldBuildCount++;
+    return player;
+  }
+
+  /**
+   * Returns a player to the pool. The player is stopped and its media cleared, but its renderers
+   * stay allocated. If the pool is full, the player is released instead.
+   */
+  public void recycle(ExoPlayer player) {
+    player.setPlayWhenReady(false);
+    player.stop();
+    player.clearMediaItems();
+    if (idlePlayers.size() < maxIdlePlayers) {
+      idlePlayers.push(player);
+    } else {
+      player.release();
+    }
+  }
+
+  /**
+   * Records a stream switch that reused a pooled player and logs the savings compared to
+   * rebuilding the player.
+   *
+   * @param switchTimeNs time the switch took, in nanoseconds.
+   */
+  public void onWarmSwitch(long switchTimeNs) {
+    warmSwitchCount++;
+    warmSwitchTimeNs += switchTimeNs;
+    Log.d(
+        LOG_TAG,
+        String.format(
+            Locale.US,
+            "Pooled stream switch: %.2f ms, saved %.2f ms and %d KB vs rebuild.",
+            switchTimeNs / 1e6,
+            getSavedTimeMsPerSwitch(),
+            getSavedBytesPerSwitch() / 1024));
+  }
+
+  /** Returns the average time saved per stream switch, in milliseconds. */
+  public double getSavedTimeMsPerSwitch() {
+    if (coldBuildCount == 0 || warmSwitchCount == 0) {
+      return 0;
+    }
+    double coldMs = coldBuildTimeNs / 1e6 / coldBuildCount;
+    double warmMs = warmSwitchTimeNs / 1e6 / warmSwitchCount;
+    return Math.max(0, coldMs - warmMs);
+  }
+
+  /** Returns the average Java and native heap allocated by a player rebuild, in bytes. */
+  public long getSavedBytesPerSwitch() {
+    return coldBuildCount == 0 ? 0 : coldBuildBytes / coldBuildCount;
+  }
+
+  /** Releases every idle player. Players currently in use are released by their owners. */
+  public void releaseAll() {
+    ExoPlayer player;
+    while ((player = idlePlayers.poll()) != null) {
+      player.release();
+    }
+  }
+
+  private static long getUsedMemoryBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+  }
+}
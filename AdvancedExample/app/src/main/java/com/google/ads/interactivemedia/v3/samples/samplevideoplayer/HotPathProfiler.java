@@ -0,0 +1,132 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.os.SystemClock;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Samples the time spent in the paths that run on every IMA poll, player event or seek, so that
+ * changes to them can be compared across builds. Timings are summarized as JSON.
+ *
+ * <p>Every call is counted, but only one in {@link #SAMPLE_INTERVAL} is timed, keeping the cost
+ * of profiling well below that of the paths being profiled. Rare paths are timed on every call.
+ *
+ * <p>This profiler takes the place of a Jetpack Microbenchmark module, which is not provided. Such
+ * a module is an Android library, which cannot depend on this app module, so the profiled paths
+ * would first have to move into a library of their own. Timings here come from real sessions
+ * instead, and include whatever else the main thread is doing. Allocations on the content progress
+ * path are checked by PlayheadSnapshotTest.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class HotPathProfiler {
+
+  /** Profiled paths. */
+  public enum Path {
+    /** VideoStreamPlayer.getContentProgress(), polled by IMA. */
+    CONTENT_PROGRESS,
+    /** Resolving whether a seek snaps back to a missed ad break. */
+    SNAPBACK_RESOLUTION,
+    /** Forwarding a player event to every VideoStreamPlayerCallback. */
+    CALLBACK_FAN_OUT,
+    /** Dispatching a burst of timed metadata. */
+    METADATA_DISPATCH,
+    /** SampleVideoPlayer.getCurrentPositionMs(). */
+    CURRENT_POSITION,
+    /** Main thread work on ad break and ad period start and end. Timed on every call. */
+    AD_TRANSITION(/* sampleInterval= */ 1);
+
+    private final int sampleMask;
+
+    Path() {
+      this(SAMPLE_INTERVAL);
+    }
+
+    Path(int sampleInterval) {
+      sampleMask = sampleInterval - 1;
+    }
+  }
+
+  /** One in this many calls is timed. Must be a power of two. */
+  public static final int SAMPLE_INTERVAL = 16;
+
+  /** Returned by {@link #begin} for calls that are not timed. */
+  public static final long NOT_SAMPLED = -1;
+
+  private static final int PATH_COUNT = Path.values().length;
+
+  private final long[] callCounts = new long[PATH_COUNT];
+  private final long[] sampleCounts = new long[PATH_COUNT];
+  private final long[] sampledTimeNs = new long[PATH_COUNT];
+  private final long[] maxTimeNs = new long[PATH_COUNT];
+
+  /**
+   * Counts a call to a path.
+   *
+   * @return the start time to pass to {@link #end}, or {@link #NOT_SAMPLED}.
+   */
+  public long begin(Path path) {
+    if ((callCounts[path.ordinal()]++ & path.sampleMask) != 0) {
+      return NOT_SAMPLED;
+    }
+    return SystemClock.elapsedRealtimeNanos();
+  }
+
+  /** Records the time of a call started with {@link #begin}. */
+  public void end(Path path, long startNs) {
+    if (startNs == NOT_SAMPLED) {
+      return;
+    }
+    long timeNs = SystemClock.elapsedRealtimeNanos() - startNs;
+    int index = path.ordinal();
+    sampleCounts[index]++;
+    sampledTimeNs[index] += timeNs;
+    maxTimeNs[index] = Math.max(maxTimeNs[index], timeNs);
+  }
+
+  /**
+   * Returns the timings as JSON, with the calls, sampled calls, mean and max nanoseconds per call
+   * of each path.
+   */
+  public JSONObject toJson() {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("sampleInterval", SAMPLE_INTERVAL);
+      for (Path path : Path.values()) {
+        int index = path.ordinal();
+        JSONObject pathJson = new JSONObject();
+        pathJson.put("calls", callCounts[index]);
+        pathJson.put("sampledCalls", sampleCounts[index]);
+        pathJson.put(
+            "meanNs", sampleCounts[index] == 0 ? 0 : sampledTimeNs[index] / sampleCounts[index]);
+        pathJson.put("maxNs", maxTimeNs[index]);
+        json.put(path.name(), pathJson);
+      }
+    } catch (JSONException e) {
+      // Only thrown for non-finite numbers, which are never put.
+      throw new IllegalStateException(e);
+    }
+    return json;
+  }
+
+  @Override
+  public String toString() {
+    return "Hot paths: " + toJson();
+  }
+}
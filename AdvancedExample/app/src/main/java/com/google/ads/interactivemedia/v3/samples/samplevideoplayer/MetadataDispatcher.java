@@ -0,0 +1,119 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.annotation.SuppressLint;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.media3.common.Metadata;
+import androidx.media3.extractor.metadata.emsg.EventMessage;
+import androidx.media3.extractor.metadata.id3.TextInformationFrame;
+import com.google.ads.interactivemedia.v3.api.player.VideoStreamPlayer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Forwards ID3 TXXX frames and emsg payloads to IMA as user text, skipping payloads that were
+ * already dispatched. Live streams repeat the same timed metadata in every segment, so repeated
+ * payloads are matched against recent ones without allocating, and only new payloads are decoded,
+ * logged and dispatched.
+ *
+ * <p>Must be used on the main thread.
+ */
+@SuppressLint("UnsafeOptInUsageError")
+/* @SuppressLint is needed for new media3 APIs. */
+public class MetadataDispatcher {
+
+  private static final String LOG_TAG = "MetadataDispatcher";
+
+  // Number of recent payloads remembered, per metadata type. Must be a power of two.
+  private static final int RECENT_SLOTS = 64;
+
+  // Direct-mapped tables of recent payloads, indexed by payload hash.
+  private final String[] recentTexts = new String[RECENT_SLOTS];
+  private final byte[][] recentMessages = new byte[RECENT_SLOTS][];
+
+  private long burstCount;
+  private long entryCount;
+  private long dispatchedCount;
+  private long dispatchTimeNs;
+
+  /**
+   * Dispatches the new user text events in a metadata burst.
+   *
+   * @param metadata metadata received from the player.
+   * @param callback callback to send new user text to, or null to only record it.
+   */
+  public void dispatch(Metadata metadata, VideoStreamPlayer.VideoStreamPlayerCallback callback) {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    for (int i = 0; i < metadata.length(); i++) {
+      Metadata.Entry entry = metadata.get(i);
+      if (entry instanceof TextInformationFrame textFrame) {
+        if ("TXXX".equals(textFrame.id) && !textFrame.values.isEmpty()) {
+          String userText = textFrame.values.get(0);
+          int slot = userText.hashCode() & (RECENT_SLOTS - 1);
+          if (!userText.equals(recentTexts[slot])) {
+            recentTexts[slot] = userText;
+            dispatchUserText(userText, callback);
+          }
+        }
+      } else if (entry instanceof EventMessage eventMessage) {
+        byte[] messageData = eventMessage.messageData;
+        int slot = Arrays.hashCode(messageData) & (RECENT_SLOTS - 1);
+        if (!Arrays.equals(messageData, recentMessages[slot])) {
+          // The entry is immutable, so its payload can be kept without copying.
+          recentMessages[slot] = messageData;
+          dispatchUserText(new String(messageData), callback);
+        }
+      }
+    }
+    entryCount += metadata.length();
+    burstCount++;
+    dispatchTimeNs += SystemClock.elapsedRealtimeNanos() - startNs;
+  }
+
+  /** Forgets recent payloads, so the next stream's metadata is dispatched from scratch. */
+  public void reset() {
+    Arrays.fill(recentTexts, null);
+    Arrays.fill(recentMessages, null);
+  }
+
+  /** Returns the average main thread time spent per metadata burst, in microseconds. */
+  public double getAverageBurstTimeUs() {
+    return burstCount == 0 ? 0 : dispatchTimeNs / 1e3 / burstCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "Metadata: %d bursts, %d entries, %d dispatched, %.1f us per burst",
+        burstCount,
+        entryCount,
+        dispatchedCount,
+        getAverageBurstTimeUs());
+  }
+
+  private void dispatchUserText(
+      String userText, VideoStreamPlayer.VideoStreamPlayerCallback callback) {
+    dispatchedCount++;
+    Log.d(LOG_TAG, "Received user text: " + userText);
+    if (callback != null) {
+      callback.onUserTextReceived(userText);
+    }
+  }
+}
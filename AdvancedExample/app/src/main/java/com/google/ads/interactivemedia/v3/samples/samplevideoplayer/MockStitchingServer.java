@@ -0,0 +1,481 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.net.Uri;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for a DAI stitching server, so that playback can be measured on localhost with
+ * repeatable ad breaks, latency and bandwidth.
+ *
+ * <p>The server stitches an ad creative's HLS playlist into a content HLS playlist at the
+ * configured content times, bounded by discontinuities and marked with {@code #EXT-X-CUE-OUT} and
+ * {@code #EXT-X-CUE-IN}. Source playlists and segments are downloaded once and kept on disk, so
+ * after the first run the stream is served without network access. Both sources must use MPEG-TS
+ * segments.
+ *
+ * <p>Every segment response is delayed by the configured latency and paced to the configured
+ * bandwidth. Configure the server before calling {@link #start}.
+ *
+ * <p>{@link #loadAdBreaks} returns the stream times of the stitched ad breaks, which stand in for
+ * the cue points a StreamManager would report, so that a stream can be played without IMA.
+ */
+public class MockStitchingServer {
+
+  /** The stream times of the stitched ad breaks, in ascending order. */
+  public static final class AdBreaks {
+    /** Start time of each ad break, in milliseconds. */
+    public final long[] startTimesMs;
+    /** End time of each ad break, in milliseconds. */
+    public final long[] endTimesMs;
+
+    private AdBreaks(long[] startTimesMs, long[] endTimesMs) {
+      this.startTimesMs = startTimesMs;
+      this.endTimesMs = endTimesMs;
+    }
+  }
+
+  /** Receives the result of {@link #loadAdBreaks}, on a background thread. */
+  public interface AdBreaksCallback {
+    void onAdBreaksLoaded(AdBreaks adBreaks);
+
+    void onAdBreaksFailed(IOException e);
+  }
+
+  private static final String LOG_TAG = "MockStitchingServer";
+
+  private static final String PLAYLIST_PATH = "/stream.m3u8";
+  private static final String CONTENT_SEGMENT_PATH = "/content/";
+  private static final String AD_SEGMENT_PATH = "/ad/";
+
+  // Bandwidth is shaped by writing this many chunks per second.
+  private static final int CHUNKS_PER_SECOND = 20;
+
+  private final File storageDir;
+  private final String contentPlaylistUrl;
+  private final String adPlaylistUrl;
+  private final List<Long> adBreakContentTimesMs = new ArrayList<>();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private int adSegmentCount = Integer.MAX_VALUE;
+  private long segmentLatencyMs;
+  private long bandwidthBytesPerSecond;
+  private ServerSocket serverSocket;
+
+  // Guarded by this.
+  private MediaPlaylist contentPlaylist;
+  private MediaPlaylist adPlaylist;
+
+  /**
+   * Creates a new MockStitchingServer.
+   *
+   * @param storageDir directory to keep downloaded playlists and segments in.
+   * @param contentPlaylistUrl URL of the content's HLS playlist. For a multivariant playlist, the
+   *     first variant is used.
+   * @param adPlaylistUrl URL of the ad creative's HLS playlist, played in every ad break.
+   */
+  public MockStitchingServer(File storageDir, String contentPlaylistUrl, String adPlaylistUrl) {
+    this.storageDir = storageDir;
+    this.contentPlaylistUrl = contentPlaylistUrl;
+    this.adPlaylistUrl = adPlaylistUrl;
+  }
+
+  /** Inserts an ad break at a content time. A break at 0 is a preroll. */
+  public void addAdBreak(long contentTimeMs) {
+    adBreakContentTimesMs.add(contentTimeMs);
+  }
+
+  /** Limits each ad break to the first segments of the ad playlist. Defaults to all of them. */
+  public void setAdSegmentCount(int adSegmentCount) {
+    this.adSegmentCount = adSegmentCount;
+  }
+
+  /** Sets the delay before every segment response starts. Defaults to none. */
+  public void setSegmentLatencyMs(long segmentLatencyMs) {
+    this.segmentLatencyMs = segmentLatencyMs;
+  }
+
+  /** Sets the rate at which segments are served, or 0 for unlimited. Defaults to unlimited. */
+  public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+    this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+  }
+
+  /** Starts serving on a free port on the loopback interface. */
+  public void start() throws IOException {
+    serverSocket =
+        new ServerSocket(/* port= */ 0, /* backlog= */ 50, InetAddress.getLoopbackAddress());
+    executor.execute(this::acceptConnections);
+    Log.i(LOG_TAG, "Serving " + getStreamUrl());
+  }
+
+  /** Returns the URL of the stitched HLS stream. */
+  public String getStreamUrl() {
+    return getBaseUrl() + PLAYLIST_PATH;
+  }
+
+  /** Returns a pattern found in the URLs of the stitched ad segments, and in no others. */
+  public Pattern getAdSegmentPattern() {
+    return Pattern.compile(Pattern.quote(getBaseUrl() + AD_SEGMENT_PATH));
+  }
+
+  private String getBaseUrl() {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort();
+  }
+
+  /**
+   * Loads the source playlists in the background, unless already loaded, and returns the ad
+   * breaks of the stitched stream to the callback.
+   */
+  public void loadAdBreaks(AdBreaksCallback callback) {
+    executor.execute(
+        () -> {
+          AdBreaks adBreaks;
+          try {
+            loadPlaylists();
+            adBreaks = buildAdBreaks();
+          } catch (IOException e) {
+            callback.onAdBreaksFailed(e);
+            return;
+          }
+          callback.onAdBreaksLoaded(adBreaks);
+        });
+  }
+
+  /** Stops serving and closes open connections. */
+  public void stop() {
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Failed to close server socket", e);
+    }
+    executor.shutdownNow();
+  }
+
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        executor.execute(() -> handleConnection(socket));
+      } catch (IOException e) {
+        // Thrown when the server socket is closed.
+      }
+    }
+  }
+
+  private void handleConnection(Socket socket) {
+    try (Socket connection = socket) {
+      BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+      String requestLine = reader.readLine();
+      // Skip the headers.
+      String header;
+      do {
+        header = reader.readLine();
+      } while (header != null && !header.isEmpty());
+      if (requestLine == null) {
+        return;
+      }
+      String[] parts = requestLine.split(" ");
+      OutputStream output = connection.getOutputStream();
+      if (parts.length < 2 || !"GET".equals(parts[0])) {
+        writeResponse(output, 405, "text/plain", new byte[0], /* shape= */ false);
+        return;
+      }
+      String path = Uri.parse(parts[1]).getPath();
+      serve(path != null ? path : "", output);
+    } catch (IOException | InterruptedException e) {
+      Log.d(LOG_TAG, "Connection closed: " + e);
+    }
+  }
+
+  private void serve(String path, OutputStream output) throws IOException, InterruptedException {
+    loadPlaylists();
+    if (PLAYLIST_PATH.equals(path)) {
+      byte[] playlist = buildStitchedPlaylist().getBytes(StandardCharsets.UTF_8);
+      writeResponse(output, 200, "application/vnd.apple.mpegurl", playlist, /* shape= */ false);
+      return;
+    }
+    MediaPlaylist playlist = null;
+    String indexString = null;
+    if (path.startsWith(CONTENT_SEGMENT_PATH)) {
+      playlist = contentPlaylist;
+      indexString = path.substring(CONTENT_SEGMENT_PATH.length());
+    } else if (path.startsWith(AD_SEGMENT_PATH)) {
+      playlist = adPlaylist;
+      indexString = path.substring(AD_SEGMENT_PATH.length());
+    }
+    int index = -1;
+    if (indexString != null && indexString.indexOf('.') > 0) {
+      try {
+        index = Integer.parseInt(indexString.substring(0, indexString.indexOf('.')));
+      } catch (NumberFormatException e) {
+        // Answered with a 404 below.
+      }
+    }
+    if (playlist == null || index < 0 || index >= playlist.segmentUrls.size()) {
+      writeResponse(output, 404, "text/plain", new byte[0], /* shape= */ false);
+      return;
+    }
+    Thread.sleep(segmentLatencyMs);
+    byte[] segment = load(playlist.segmentUrls.get(index));
+    writeResponse(output, 200, "video/mp2t", segment, /* shape= */ true);
+  }
+
+  // Writes the content playlist's segments, with the ad playlist's segments inserted at each ad
+  // break.
+  private String buildStitchedPlaylist() {
+    List<Integer> breakSegmentIndices = getBreakSegmentIndices();
+    int adSegments = getAdSegments();
+    double adDurationSec = getAdDurationSec();
+    double targetDurationSec =
+        Math.max(contentPlaylist.targetDurationSec, adPlaylist.targetDurationSec);
+
+    StringBuilder playlist = new StringBuilder();
+    playlist.append("#EXTM3U\n#EXT-X-VERSION:3\n");
+    playlist.append("#EXT-X-TARGETDURATION:").append((int) Math.ceil(targetDurationSec));
+    playlist.append("\n#EXT-X-MEDIA-SEQUENCE:0\n#EXT-X-PLAYLIST-TYPE:VOD\n");
+    int contentSegments = contentPlaylist.segmentUrls.size();
+    for (int i = 0; i < contentSegments; i++) {
+      if (breakSegmentIndices.contains(i)) {
+        appendAdBreak(
+            playlist, adSegments, adDurationSec, /* hasPrevious= */ i > 0, /* hasNext= */ true);
+      }
+      appendSegment(playlist, contentPlaylist, CONTENT_SEGMENT_PATH, i);
+    }
+    if (breakSegmentIndices.contains(contentSegments)) {
+      appendAdBreak(
+          playlist, adSegments, adDurationSec, /* hasPrevious= */ true, /* hasNext= */ false);
+    }
+    playlist.append("#EXT-X-ENDLIST\n");
+    return playlist.toString();
+  }
+
+  // Returns the stream times of the ad breaks in the stitched playlist.
+  private AdBreaks buildAdBreaks() {
+    List<Integer> breakSegmentIndices = getBreakSegmentIndices();
+    long adDurationMs = Math.round(getAdDurationSec() * 1000);
+    long[] startTimesMs = new long[breakSegmentIndices.size()];
+    long[] endTimesMs = new long[breakSegmentIndices.size()];
+    double contentTimeSec = 0;
+    int segment = 0;
+    for (int i = 0; i < breakSegmentIndices.size(); i++) {
+      for (; segment < breakSegmentIndices.get(i); segment++) {
+        contentTimeSec += contentPlaylist.segmentDurationsSec.get(segment);
+      }
+      startTimesMs[i] = Math.round(contentTimeSec * 1000) + i * adDurationMs;
+      endTimesMs[i] = startTimesMs[i] + adDurationMs;
+    }
+    return new AdBreaks(startTimesMs, endTimesMs);
+  }
+
+  // Returns the index of the content segment each ad break is inserted before, in ascending
+  // order, or the content segment count for a postroll. Breaks are inserted before the first
+  // content segment starting at or after their time, and breaks due before the same content
+  // segment play as one.
+  private List<Integer> getBreakSegmentIndices() {
+    List<Long> breakTimesMs = new ArrayList<>(adBreakContentTimesMs);
+    Collections.sort(breakTimesMs);
+    List<Integer> indices = new ArrayList<>();
+    int nextBreak = 0;
+    double contentTimeSec = 0;
+    int contentSegments = contentPlaylist.segmentUrls.size();
+    for (int i = 0; i < contentSegments && nextBreak < breakTimesMs.size(); i++) {
+      if (breakTimesMs.get(nextBreak) <= contentTimeSec * 1000) {
+        indices.add(i);
+        while (nextBreak < breakTimesMs.size()
+            && breakTimesMs.get(nextBreak) <= contentTimeSec * 1000) {
+          nextBreak++;
+        }
+      }
+      contentTimeSec += contentPlaylist.segmentDurationsSec.get(i);
+    }
+    // Breaks after the end of the content play as one postroll.
+    if (nextBreak < breakTimesMs.size()) {
+      indices.add(contentSegments);
+    }
+    return indices;
+  }
+
+  private int getAdSegments() {
+    return Math.min(adSegmentCount, adPlaylist.segmentUrls.size());
+  }
+
+  private double getAdDurationSec() {
+    double adDurationSec = 0;
+    for (int i = 0; i < getAdSegments(); i++) {
+      adDurationSec += adPlaylist.segmentDurationsSec.get(i);
+    }
+    return adDurationSec;
+  }
+
+  private void appendAdBreak(
+      StringBuilder playlist,
+      int adSegments,
+      double adDurationSec,
+      boolean hasPrevious,
+      boolean hasNext) {
+    if (hasPrevious) {
+      playlist.append("#EXT-X-DISCONTINUITY\n");
+    }
+    playlist.append(String.format(Locale.US, "#EXT-X-CUE-OUT:DURATION=%.3f\n", adDurationSec));
+    for (int i = 0; i < adSegments; i++) {
+      appendSegment(playlist, adPlaylist, AD_SEGMENT_PATH, i);
+    }
+    playlist.append("#EXT-X-CUE-IN\n");
+    if (hasNext) {
+      playlist.append("#EXT-X-DISCONTINUITY\n");
+    }
+  }
+
+  private static void appendSegment(
+      StringBuilder playlist, MediaPlaylist source, String path, int index) {
+    playlist.append(
+        String.format(Locale.US, "#EXTINF:%.3f,\n", source.segmentDurationsSec.get(index)));
+    playlist.append(path).append(index).append(".ts\n");
+  }
+
+  private synchronized void loadPlaylists() throws IOException {
+    if (contentPlaylist == null) {
+      contentPlaylist = loadMediaPlaylist(contentPlaylistUrl);
+    }
+    if (adPlaylist == null) {
+      adPlaylist = loadMediaPlaylist(adPlaylistUrl);
+    }
+  }
+
+  private MediaPlaylist loadMediaPlaylist(String url) throws IOException {
+    String text = new String(load(url), StandardCharsets.UTF_8);
+    MediaPlaylist playlist = new MediaPlaylist();
+    String[] lines = text.split("\n");
+    double durationSec = 0;
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.startsWith("#EXT-X-STREAM-INF") && i + 1 < lines.length) {
+        // A multivariant playlist. Use its first variant.
+        return loadMediaPlaylist(resolve(url, lines[i + 1].trim()));
+      } else if (line.startsWith("#EXT-X-TARGETDURATION:")) {
+        playlist.targetDurationSec = Double.parseDouble(line.substring(line.indexOf(':') + 1));
+      } else if (line.startsWith("#EXTINF:")) {
+        String duration = line.substring(line.indexOf(':') + 1);
+        int comma = duration.indexOf(',');
+        durationSec = Double.parseDouble(comma >= 0 ? duration.substring(0, comma) : duration);
+      } else if (!line.isEmpty() && !line.startsWith("#")) {
+        playlist.segmentUrls.add(resolve(url, line));
+        playlist.segmentDurationsSec.add(durationSec);
+      }
+    }
+    if (playlist.segmentUrls.isEmpty()) {
+      throw new IOException("No segments in " + url);
+    }
+    return playlist;
+  }
+
+  private static String resolve(String baseUrl, String url) throws IOException {
+    return new URL(new URL(baseUrl), url).toString();
+  }
+
+  // Returns a resource's bytes, downloading it only if it is not already stored.
+  private byte[] load(String url) throws IOException {
+    File file = new File(storageDir, Integer.toHexString(url.hashCode()) + ".bin");
+    if (file.exists()) {
+      try (InputStream input = new FileInputStream(file)) {
+        return readFully(input);
+      }
+    }
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    byte[] data;
+    try (InputStream input = connection.getInputStream()) {
+      data = readFully(input);
+    } finally {
+      connection.disconnect();
+    }
+    storageDir.mkdirs();
+    // Segments may be requested concurrently, so each download gets its own temporary file.
+    File tempFile = File.createTempFile(file.getName(), ".tmp", storageDir);
+    try (OutputStream output = new FileOutputStream(tempFile)) {
+      output.write(data);
+    }
+    tempFile.renameTo(file);
+    return data;
+  }
+
+  private static byte[] readFully(InputStream input) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[16 * 1024];
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      output.write(buffer, 0, read);
+    }
+    return output.toByteArray();
+  }
+
+  private void writeResponse(
+      OutputStream output, int status, String contentType, byte[] body, boolean shape)
+      throws IOException, InterruptedException {
+    String headers =
+        String.format(
+            Locale.US,
+            "HTTP/1.1 %d %s\r\nContent-Type: %s\r\nContent-Length: %d\r\n"
+                + "Connection: close\r\n\r\n",
+            status,
+            status == 200 ? "OK" : "Error",
+            contentType,
+            body.length);
+    output.write(headers.getBytes(StandardCharsets.US_ASCII));
+    if (!shape || bandwidthBytesPerSecond <= 0) {
+      output.write(body);
+      output.flush();
+      return;
+    }
+    int chunkBytes = (int) Math.max(1, bandwidthBytesPerSecond / CHUNKS_PER_SECOND);
+    for (int offset = 0; offset < body.length; offset += chunkBytes) {
+      output.write(body, offset, Math.min(chunkBytes, body.length - offset));
+      output.flush();
+      Thread.sleep(1000 / CHUNKS_PER_SECOND);
+    }
+  }
+
+  private static final class MediaPlaylist {
+    private final List<String> segmentUrls = new ArrayList<>();
+    private final List<Double> segmentDurationsSec = new ArrayList<>();
+    private double targetDurationSec;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.os.Process;
+import android.os.SystemClock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Shares bandwidth, video decoders and audio between the tiles of a multiview, where several
+ * streams play at once. The focused tile gets half of the bandwidth budget, full resolution and
+ * audio. The other tiles split the rest of the budget at a reduced resolution and play muted.
+ * Tiles past the decoder limit keep streaming audio for ad tracking but decode no video.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class MultiviewCoordinator {
+
+  // Largest video selected for tiles that are not focused.
+  private static final int SECONDARY_MAX_VIDEO_WIDTH = 640;
+  private static final int SECONDARY_MAX_VIDEO_HEIGHT = 360;
+
+  private final List<SampleVideoPlayer> tiles = new ArrayList<>();
+  private final int bitrateBudget;
+  private final int maxVideoDecoders;
+  private final long startRealtimeMs = SystemClock.elapsedRealtime();
+  private final long startCpuTimeMs = Process.getElapsedCpuTime();
+
+  private int focusedTile;
+
+  /**
+   * Creates a new MultiviewCoordinator.
+   *
+   * @param bitrateBudget total video bitrate shared by all tiles, in bits per second.
+   * @param maxVideoDecoders number of tiles that may decode video at once, including the focused
+   *     tile.
+   */
+  public MultiviewCoordinator(int bitrateBudget, int maxVideoDecoders) {
+    this.bitrateBudget = bitrateBudget;
+    this.maxVideoDecoders = maxVideoDecoders;
+  }
+
+  /** Adds a tile and returns its index. The first tile added is focused. */
+  public int addTile(SampleVideoPlayer player) {
+    tiles.add(player);
+    applyConstraints();
+    return tiles.size() - 1;
+  }
+
+  /** Gives a tile full quality and audio, and reduces the others. */
+  public void setFocusedTile(int tile) {
+    focusedTile = tile;
+    applyConstraints();
+  }
+
+  public int getFocusedTile() {
+    return focusedTile;
+  }
+
+  /** Returns per tile dropped frames and the process's CPU use since this was created. */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("Multiview:");
+    for (int i = 0; i < tiles.size(); i++) {
+      builder.append(
+          String.format(
+              Locale.US,
+              " tile %d%s %d dropped frames,",
+              i,
+              i == focusedTile ? " (focused)" : "",
+              tiles.get(i).getDroppedFrameCount()));
+    }
+    long elapsedMs = SystemClock.elapsedRealtime() - startRealtimeMs;
+    long cpuTimeMs = Process.getElapsedCpuTime() - startCpuTimeMs;
+    builder.append(
+        String.format(
+            Locale.US,
+            " process CPU %.1f%% of one core",
+            elapsedMs == 0 ? 0 : 100.0 * cpuTimeMs / elapsedMs));
+    return builder.toString();
+  }
+
+  private void applyConstraints() {
+    int tileCount = tiles.size();
+    int focusedBitrate = tileCount == 1 ? bitrateBudget : bitrateBudget / 2;
+    int secondaryBitrate = tileCount == 1 ? 0 : (bitrateBudget - focusedBitrate) / (tileCount - 1);
+    // The focused tile always decodes video, then tiles in order up to the decoder limit.
+    int secondaryDecoders = maxVideoDecoders - 1;
+    for (int i = 0; i < tileCount; i++) {
+      SampleVideoPlayer tile = tiles.get(i);
+      if (i == focusedTile) {
+        tile.setTileConstraints(
+            focusedBitrate,
+            Integer.MAX_VALUE,
+            Integer.MAX_VALUE,
+            /* videoEnabled= */ true,
+            /* audible= */ true);
+      } else {
+        tile.setTileConstraints(
+            secondaryBitrate,
+            SECONDARY_MAX_VIDEO_WIDTH,
+            SECONDARY_MAX_VIDEO_HEIGHT,
+            /* videoEnabled= */ secondaryDecoders-- > 0,
+            /* audible= */ false);
+      }
+    }
+  }
+}
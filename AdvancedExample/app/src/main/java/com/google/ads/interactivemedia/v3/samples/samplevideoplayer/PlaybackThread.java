@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * A playback thread shared by the players of one SampleVideoPlayer, rather than one thread per
+ * player. It runs at audio priority, so it must run nothing but the players' playback loops; app
+ * work goes to the {@link BackgroundThread}.
+ *
+ * <p>The player's application looper stays on the main thread, as PlayerView requires it there.
+ * Players built with {@link SampleVideoPlayer#setUsePlaybackThread} run their internal playback
+ * loop on this thread. The loops run one after another, so only one of the players may be playing
+ * at a time.
+ */
+public final class PlaybackThread {
+
+  private static HandlerThread thread;
+
+  /** Returns the thread's looper, starting the thread if needed. */
+  public static synchronized Looper getLooper() {
+    if (thread == null) {
+      thread = new HandlerThread("PlaybackThread", Process.THREAD_PRIORITY_AUDIO);
+      thread.start();
+    }
+    return thread.getLooper();
+  }
+
+  private PlaybackThread() {}
+}
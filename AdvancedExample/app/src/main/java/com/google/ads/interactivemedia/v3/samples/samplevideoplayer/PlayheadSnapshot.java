@@ -0,0 +1,93 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.media3.common.Player;
+import androidx.media3.common.Timeline;
+import com.google.ads.interactivemedia.v3.api.player.VideoProgressUpdate;
+
+/**
+ * Answers IMA's frequent playhead polls from state cached on player events. The live window
+ * offset is computed once per timeline change instead of on every poll, and the last progress
+ * update is reused while the playhead does not move, for example while paused or buffering.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class PlayheadSnapshot {
+
+  private final Timeline.Window window = new Timeline.Window();
+
+  // Added to the player position to get stream time. Non-zero for live streams only.
+  private long streamTimeOffsetMs;
+  // Added to period positions to get stream time. Non-zero for live streams only.
+  private long periodStreamTimeOffsetMs;
+  private VideoProgressUpdate lastProgress = VideoProgressUpdate.VIDEO_TIME_NOT_READY;
+
+  /** Updates the cached live window offset. Call when the player's timeline changes. */
+  public void onTimelineChanged(Timeline timeline, int windowIndex) {
+    if (timeline.isEmpty() || windowIndex >= timeline.getWindowCount()) {
+      streamTimeOffsetMs = 0;
+      periodStreamTimeOffsetMs = 0;
+      return;
+    }
+    timeline.getWindow(windowIndex, window);
+    if (window.isLive()) {
+      streamTimeOffsetMs = window.windowStartTimeMs;
+      periodStreamTimeOffsetMs = window.windowStartTimeMs - window.getPositionInFirstPeriodMs();
+    } else {
+      streamTimeOffsetMs = 0;
+      periodStreamTimeOffsetMs = 0;
+    }
+  }
+
+  /** Forgets the cached state. Call when a new stream starts. */
+  public void reset() {
+    streamTimeOffsetMs = 0;
+    periodStreamTimeOffsetMs = 0;
+    lastProgress = VideoProgressUpdate.VIDEO_TIME_NOT_READY;
+  }
+
+  /** Returns the stream time of the playhead, in milliseconds. */
+  public long getPositionMs(Player player) {
+    return player.getCurrentPosition() + streamTimeOffsetMs;
+  }
+
+  /** Returns the offset to add to a period position to get stream time, in milliseconds. */
+  public long getPeriodStreamTimeOffsetMs() {
+    return periodStreamTimeOffsetMs;
+  }
+
+  /** Returns the playhead progress, allocating only if it changed since the last poll. */
+  public VideoProgressUpdate getProgress(Player player) {
+    return getProgress(player.getCurrentPosition(), player.getDuration());
+  }
+
+  /**
+   * Returns the playhead progress for a player position and duration, allocating only if it
+   * changed since the last poll.
+   */
+  @VisibleForTesting
+  VideoProgressUpdate getProgress(long playerPositionMs, long durationMs) {
+    long positionMs = playerPositionMs + streamTimeOffsetMs;
+    if (lastProgress.getCurrentTimeMs() != positionMs
+        || lastProgress.getDurationMs() != durationMs) {
+      lastProgress = new VideoProgressUpdate(positionMs, durationMs);
+    }
+    return lastProgress;
+  }
+}
@@ -19,7 +19,10 @@ package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.net.Uri;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.C;
 import androidx.media3.common.ForwardingPlayer;
 import androidx.media3.common.MediaItem;
@@ -29,14 +32,18 @@ import androidx.media3.common.Timeline;
 import androidx.media3.common.util.Util;
 import androidx.media3.datasource.DataSource;
 import androidx.media3.datasource.DefaultDataSource;
+import androidx.media3.exoplayer.DefaultLoadControl;
 import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.LoadControl;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
 import androidx.media3.exoplayer.dash.DashMediaSource;
 import androidx.media3.exoplayer.dash.DefaultDashChunkSource;
 import androidx.media3.exoplayer.hls.HlsMediaSource;
 import androidx.media3.exoplayer.source.MediaSource;
-import androidx.media3.extractor.metadata.emsg.EventMessage;
-import androidx.media3.extractor.metadata.id3.TextInformationFrame;
+import androidx.media3.exoplayer.upstream.BandwidthMeter;
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
 import androidx.media3.ui.PlayerView;
+import com.google.ads.interactivemedia.v3.api.player.VideoProgressUpdate;
 import com.google.ads.interactivemedia.v3.api.player.VideoStreamPlayer;
 
 /** A video player that plays HLS or DASH streams using ExoPlayer. */
@@ -49,6 +56,12 @@ public class SampleVideoPlayer {
   // The UUID uniquely identifying the Widevine DRM scheme.
   private static final String WIDEVINE_UUID = "edef8ba9-79d6-4ace-a3c8-27dcd51d21ed";
 
+  // Buffer of a fallback player. Enough to start at once, without competing for bandwidth with
+  // the stream request and the stream it may not replace.
+  private static final int FALLBACK_BUFFER_MS = 10_000;
+  private static final int FALLBACK_BUFFER_FOR_PLAYBACK_MS = 1_000;
+  private static final int FALLBACK_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS = 2_000;
+
   /**
    * Video player callback interface that extends IMA's VideoStreamPlayerCallback by adding the
    * onSeek() callback to support ad snapback.
@@ -66,6 +79,117 @@ public class SampleVideoPlayer {
   private Boolean streamRequested;
   private boolean canSeek;
   private String licenseUrl;
+  private ExoPlayerPool playerPool;
+  private SegmentCache segmentCache;
+  private AdSegmentMemoryCache adSegmentCache;
+  private CuePointLoadControl loadControl;
+  private BandwidthEstimateStore bandwidthEstimateStore;
+  private StartupTracer startupTracer;
+  private HotPathProfiler hotPathProfiler;
+  private boolean usePlaybackThread;
+  private final MetadataDispatcher metadataDispatcher = new MetadataDispatcher();
+  private final PlayheadSnapshot playheadSnapshot = new PlayheadSnapshot();
+  private int playbackState = Player.STATE_IDLE;
+  // Whether a seek happened since the last playback state change, so that the buffering it causes
+  // is not counted as a rebuffer.
+  private boolean seekPending;
+  private boolean startupBitrateReported;
+  private boolean startedWithSavedEstimate;
+  private long droppedFrameCount;
+  // A second player holding a prepared stream to fail over to, and the stream's URL.
+  private ExoPlayer fallbackPlayer;
+  private String fallbackPlayerUrl;
+  private long failoverStartNs;
+  private boolean failoverPrewarmed;
+  private long lastFailoverGapMs = C.TIME_UNSET;
+  // Whether the current player was taken over from prepareFallback(). Such a player has its own
+  // LoadControl and BandwidthMeter, so it does not report to the shared ones and is never pooled.
+  private boolean playerIsFallback;
+
+  // Multiview tile constraints, applied to every player used once set.
+  private boolean hasTileConstraints;
+  private int maxVideoBitrate = Integer.MAX_VALUE;
+  private int maxVideoWidth = Integer.MAX_VALUE;
+  private int maxVideoHeight = Integer.MAX_VALUE;
+  private boolean videoEnabled = true;
+  private boolean audible = true;
+
+  // Listens for timed metadata, timeline changes, seeks and rebuffers. Registered once per player,
+  // so that a pooled player does not accumulate listeners across streams.
+  private final Player.Listener playerListener =
+      new Player.Listener() {
+        @Override
+        public void onTimelineChanged(Timeline timeline, int reason) {
+          updateTimeline(timeline);
+        }
+
+        @Override
+        public void onPositionDiscontinuity(
+            Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
+          // User seeks and snapbacks alike.
+          if (reason == Player.DISCONTINUITY_REASON_SEEK
+              || reason == Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT) {
+            seekPending = true;
+          }
+        }
+
+        @Override
+        public void onRenderedFirstFrame() {
+          if (startupTracer != null) {
+            startupTracer.end(StartupTracer.Stage.PLAYER_PREPARE);
+            startupTracer.end(StartupTracer.Stage.TAP_TO_FIRST_FRAME);
+          }
+          if (failoverStartNs != 0) {
+            lastFailoverGapMs = (SystemClock.elapsedRealtimeNanos() - failoverStartNs) / 1_000_000;
+            failoverStartNs = 0;
+            Log.i(
+                LOG_TAG,
+                "Failover gap: "
+                    + lastFailoverGapMs
+                    + " ms, "
+                    + (failoverPrewarmed ? "pre-warmed" : "cold"));
+          }
+        }
+
+        @Override
+        public void onPlaybackStateChanged(int state) {
+          if (loadControl != null
+              && !playerIsFallback
+              && !seekPending
+              && state == Player.STATE_BUFFERING
+              && playbackState == Player.STATE_READY) {
+            loadControl.onRebuffer(getCurrentPositionMs());
+          }
+          // A seek from READY turns the player to BUFFERING at once, so the flag never outlives
+          // the buffering it causes.
+          seekPending = false;
+          if (bandwidthEstimateStore != null
+              && !playerIsFallback
+              && state == Player.STATE_READY
+              && !startupBitrateReported
+              && player.getVideoFormat() != null) {
+            bandwidthEstimateStore.onStartupBitrate(
+                player.getVideoFormat().bitrate, startedWithSavedEstimate);
+            startupBitrateReported = true;
+          }
+          playbackState = state;
+        }
+
+        @Override
+        public void onMetadata(Metadata metadata) {
+          long startNs = beginProfiling(HotPathProfiler.Path.METADATA_DISPATCH);
+          metadataDispatcher.dispatch(metadata, playerCallback);
+          endProfiling(HotPathProfiler.Path.METADATA_DISPATCH, startNs);
+        }
+      };
+
+  private final AnalyticsListener analyticsListener =
+      new AnalyticsListener() {
+        @Override
+        public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+          droppedFrameCount += droppedFrames;
+        }
+      };
 
   public SampleVideoPlayer(Context context, PlayerView playerView) {
     this.context = context;
@@ -74,10 +198,264 @@ public class SampleVideoPlayer {
     canSeek = true;
   }
 
+  /**
+   * Sets a pool to take players from. With a pool, stream switches keep the current player and
+   * only swap its MediaSource, and released players are returned to the pool instead of being
+   * destroyed.
+   */
+  public void setPlayerPool(ExoPlayerPool playerPool) {
+    this.playerPool = playerPool;
+  }
+
+  /** Sets an on-disk cache that manifests and segments are read through. Optional. */
+  public void setSegmentCache(SegmentCache segmentCache) {
+    this.segmentCache = segmentCache;
+  }
+
+  /** Sets an in-memory cache for repeated ad segments, checked before disk and network. */
+  public void setAdSegmentCache(AdSegmentMemoryCache adSegmentCache) {
+    this.adSegmentCache = adSegmentCache;
+  }
+
+  /**
+   * Sets the LoadControl that players are built with. With a player pool, every SampleVideoPlayer
+   * using the pool must set the same instance.
+   */
+  public void setLoadControl(CuePointLoadControl loadControl) {
+    this.loadControl = loadControl;
+  }
+
+  /**
+   * Sets the ad breaks of the current stream, so that loading can run ahead of them and the seek
+   * bar can mark them.
+   *
+   * @param startTimesMs start times of the ad breaks in stream time, in ascending order.
+   * @param endTimesMs end times of the ad breaks in stream time, in the same order.
+   * @param played whether each ad break has been played, in the same order.
+   */
+  public void setAdBreaks(long[] startTimesMs, long[] endTimesMs, boolean[] played) {
+    if (loadControl != null) {
+      loadControl.setAdBreaks(startTimesMs, endTimesMs);
+    }
+    playerView.setExtraAdGroupMarkers(startTimesMs, played);
+  }
+
+  /**
+   * Sets the store that seeds players with the bandwidth estimate saved by earlier sessions. With
+   * a player pool, every SampleVideoPlayer using the pool must set the same instance.
+   */
+  public void setBandwidthEstimateStore(BandwidthEstimateStore bandwidthEstimateStore) {
+    this.bandwidthEstimateStore = bandwidthEstimateStore;
+  }
+
+  /** Sets the tracer to report player preparation and the first rendered frame to. Optional. */
+  public void setStartupTracer(StartupTracer startupTracer) {
+    this.startupTracer = startupTracer;
+  }
+
+  /** Sets the profiler to time metadata dispatch and position queries with. Optional. */
+  public void setHotPathProfiler(HotPathProfiler hotPathProfiler) {
+    this.hotPathProfiler = hotPathProfiler;
+  }
+
+  /**
+   * Sets whether players run their internal playback loop on the shared {@link PlaybackThread}
+   * rather than on a thread of their own. Player events are still delivered on the main thread.
+   * Applies to players built later, except the fallback player, which always gets a thread of its
+   * own as it loads while the current player may be playing.
+   *
+   * <p>The loops of players sharing the thread run one after another, so only one player on it may
+   * be playing at a time. Set this only on a single SampleVideoPlayer at a time, and not on
+   * players shown side by side, such as in a multiview. Pooled players may share the thread, as a
+   * player is stopped before it is returned to the pool and stopped players leave it idle. With a
+   * player pool, every SampleVideoPlayer using the pool must set the same value.
+   */
+  public void setUsePlaybackThread(boolean usePlaybackThread) {
+    this.usePlaybackThread = usePlaybackThread;
+  }
+
+  /**
+   * Constrains playback to share resources with other tiles of a multiview. Applies to the current
+   * player and to any player used later.
+   *
+   * @param maxVideoBitrate highest video bitrate to select, in bits per second.
+   * @param maxVideoWidth widest video to select, in pixels.
+   * @param maxVideoHeight tallest video to select, in pixels.
+   * @param videoEnabled whether to decode video at all. Disabling it frees the video decoder.
+   * @param audible whether to play audio. Only an audible player requests audio focus.
+   */
+  public void setTileConstraints(
+      int maxVideoBitrate,
+      int maxVideoWidth,
+      int maxVideoHeight,
+      boolean videoEnabled,
+      boolean audible) {
+    hasTileConstraints = true;
+    this.maxVideoBitrate = maxVideoBitrate;
+    this.maxVideoWidth = maxVideoWidth;
+    this.maxVideoHeight = maxVideoHeight;
+    this.videoEnabled = videoEnabled;
+    this.audible = audible;
+    applyTileConstraints();
+  }
+
+  /** Returns the number of video frames dropped since this player was created. */
+  public long getDroppedFrameCount() {
+    return droppedFrameCount;
+  }
+
+  private void applyTileConstraints() {
+    if (player == null || !hasTileConstraints) {
+      return;
+    }
+    player.setTrackSelectionParameters(
+        player
+            .getTrackSelectionParameters()
+            .buildUpon()
+            .setMaxVideoBitrate(maxVideoBitrate)
+            .setMaxVideoSize(maxVideoWidth, maxVideoHeight)
+            .setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, !videoEnabled)
+            .build());
+    player.setVolume(audible ? 1 : 0);
+    player.setAudioAttributes(AudioAttributes.DEFAULT, /* handleAudioFocus= */ audible);
+  }
+
+  private long beginProfiling(HotPathProfiler.Path path) {
+    return hotPathProfiler != null ? hotPathProfiler.begin(path) : HotPathProfiler.NOT_SAMPLED;
+  }
+
+  private void endProfiling(HotPathProfiler.Path path, long startNs) {
+    if (hotPathProfiler != null) {
+      hotPathProfiler.end(path, startNs);
+    }
+  }
+
+  private ExoPlayer buildPlayer() {
+    return buildPlayer(
+        loadControl,
+        bandwidthEstimateStore != null ? bandwidthEstimateStore.getBandwidthMeter() : null,
+        usePlaybackThread ? PlaybackThread.getLooper() : null);
+  }
+
+  // Builds a player with the given LoadControl, BandwidthMeter and playback looper, or the
+  // defaults for null.
+  private ExoPlayer buildPlayer(
+      LoadControl loadControl, BandwidthMeter bandwidthMeter, Looper playbackLooper) {
+    ExoPlayer.Builder builder = new ExoPlayer.Builder(context);
+    if (loadControl != null) {
+      builder.setLoadControl(loadControl);
+    }
+    if (bandwidthMeter != null) {
+      builder.setBandwidthMeter(bandwidthMeter);
+    }
+    if (playbackLooper != null) {
+      builder.setPlaybackLooper(playbackLooper);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Prepares a stream in a second player, without showing or playing it, so that {@link
+   * #failOver} can switch to it at once. Its manifest and first segments load meanwhile, such as
+   * while a DAI stream request is in flight. Replaces any stream prepared earlier.
+   *
+   * <p>The second player has a small buffer and a bandwidth meter of its own, so that it neither
+   * shares the cue point aware LoadControl with the current player nor skews the saved bandwidth
+   * estimates.
+   */
+  public void prepareFallback(String url) {
+    discardFallback();
+    fallbackPlayer =
+        buildPlayer(
+            new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(
+                    FALLBACK_BUFFER_MS,
+                    FALLBACK_BUFFER_MS,
+                    FALLBACK_BUFFER_FOR_PLAYBACK_MS,
+                    FALLBACK_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS)
+                .build(),
+            new DefaultBandwidthMeter.Builder(context).build(),
+            /* playbackLooper= */ null);
+    fallbackPlayer.setMediaSource(createMediaSource(url));
+    fallbackPlayer.prepare();
+    fallbackPlayerUrl = url;
+  }
+
+  /** Releases the stream prepared by {@link #prepareFallback}, if any. */
+  public void discardFallback() {
+    if (fallbackPlayer != null) {
+      fallbackPlayer.release();
+      fallbackPlayer = null;
+      fallbackPlayerUrl = null;
+    }
+  }
+
+  /**
+   * Switches playback to a stream, taking over the player prepared by {@link #prepareFallback}
+   * if it holds that stream. The gap until the stream's first frame is logged.
+   */
+  public void failOver(String url) {
+    failoverStartNs = SystemClock.elapsedRealtimeNanos();
+    failoverPrewarmed = fallbackPlayer != null && url.equals(fallbackPlayerUrl);
+    if (!failoverPrewarmed) {
+      discardFallback();
+      setStreamUrl(url);
+      play();
+      return;
+    }
+    ExoPlayer preparedPlayer = fallbackPlayer;
+    fallbackPlayer = null;
+    fallbackPlayerUrl = null;
+    releasePlayer();
+    player = preparedPlayer;
+    playerIsFallback = true;
+    // Reset before attaching, then catch up on what the prepared player already loaded, as its
+    // listeners only hear of later changes.
+    resetStreamState();
+    attachPlayer();
+    updateTimeline(player.getCurrentTimeline());
+    playbackState = player.getPlaybackState();
+    streamUrl = url;
+    streamRequested = true;
+    player.setPlayWhenReady(true);
+  }
+
+  private void updateTimeline(Timeline timeline) {
+    playheadSnapshot.onTimelineChanged(timeline, player.getCurrentMediaItemIndex());
+    if (loadControl != null && !playerIsFallback) {
+      loadControl.setStreamTimeOffsetMs(playheadSnapshot.getPeriodStreamTimeOffsetMs());
+    }
+  }
+
+  /**
+   * Returns the gap between the last {@link #failOver} and the fallback stream's first frame, in
+   * milliseconds, or {@link C#TIME_UNSET} if there has been none.
+   */
+  public long getLastFailoverGapMs() {
+    return lastFailoverGapMs;
+  }
+
   private void initPlayer() {
-    release();
+    if (playerPool != null && player != null && !playerIsFallback) {
+      // Keep the warm player, only its MediaSource changes.
+      long startNs = SystemClock.elapsedRealtimeNanos();
+      player.stop();
+      player.clearMediaItems();
+      playbackState = Player.STATE_IDLE;
+      seekPending = false;
+      playerPool.onWarmSwitch(SystemClock.elapsedRealtimeNanos() - startNs);
+      return;
+    }
+    releasePlayer();
+
+    player = (playerPool != null) ? playerPool.acquire(this::buildPlayer) : buildPlayer();
+    attachPlayer();
+  }
 
-    player = new ExoPlayer.Builder(context).build();
+  private void attachPlayer() {
+    player.addListener(playerListener);
+    player.addAnalyticsListener(analyticsListener);
+    applyTileConstraints();
     playerView.setPlayer(
         new ForwardingPlayer(player) {
           @Override
@@ -114,13 +492,38 @@ public class SampleVideoPlayer {
       player.setPlayWhenReady(true);
       return;
     }
+    if (startupTracer != null) {
+      startupTracer.begin(StartupTracer.Stage.PLAYER_PREPARE);
+    }
     initPlayer();
+    resetStreamState();
+    player.setMediaSource(createMediaSource(streamUrl));
+    player.prepare();
+
+    player.setPlayWhenReady(true);
+    streamRequested = true;
+  }
+
+  private void resetStreamState() {
+    metadataDispatcher.reset();
+    playheadSnapshot.reset();
+    startupBitrateReported = false;
+    startedWithSavedEstimate =
+        bandwidthEstimateStore != null && bandwidthEstimateStore.hasSavedEstimate();
+  }
 
-    DataSource.Factory dataSourceFactory = new DefaultDataSource.Factory(context);
+  private MediaSource createMediaSource(String url) {
+    DataSource.Factory dataSourceFactory =
+        (segmentCache != null)
+            ? segmentCache.createDataSourceFactory()
+            : new DefaultDataSource.Factory(context);
+    if (adSegmentCache != null) {
+      dataSourceFactory = adSegmentCache.createDataSourceFactory(dataSourceFactory);
+    }
     MediaSource mediaSource;
-    Uri streamUri = Uri.parse(streamUrl);
+    Uri streamUri = Uri.parse(url);
     MediaItem mediaItem = new MediaItem.Builder().setUri(streamUri).build();
-    switch (Util.inferContentType(Uri.parse(streamUrl))) {
+    switch (Util.inferContentType(Uri.parse(url))) {
       case C.CONTENT_TYPE_HLS:
         mediaSource = new HlsMediaSource.Factory(dataSourceFactory).createMediaSource(mediaItem);
         break;
@@ -133,37 +536,7 @@ public class SampleVideoPlayer {
       default:
         throw new UnsupportedOperationException("Unknown stream type.");
     }
-
-    player.setMediaSource(mediaSource);
-    player.prepare();
-
-    // Register for ID3 events.
-    player.addListener(
-        new Player.Listener() {
-          @Override
-          public void onMetadata(Metadata metadata) {
-            for (int i = 0; i < metadata.length(); i++) {
-              Metadata.Entry entry = metadata.get(i);
-              if (entry instanceof TextInformationFrame textFrame) {
-                if ("TXXX".equals(textFrame.id)) {
-                  Log.d(LOG_TAG, "Received user text: " + textFrame.values.get(0));
-                  if (playerCallback != null) {
-                    playerCallback.onUserTextReceived(textFrame.values.get(0));
-                  }
-                }
-              } else if (entry instanceof EventMessage eventMessage) {
-                String eventMessageValue = new String(eventMessage.messageData);
-                Log.d(LOG_TAG, "Received user text: " + eventMessageValue);
-                if (playerCallback != null) {
-                  playerCallback.onUserTextReceived(eventMessageValue);
-                }
-              }
-            }
-          }
-        });
-
-    player.setPlayWhenReady(true);
-    streamRequested = true;
+    return mediaSource;
   }
 
   public void pause() {
@@ -179,9 +552,25 @@ public class SampleVideoPlayer {
   }
 
   public void release() {
+    discardFallback();
+    releasePlayer();
+  }
+
+  private void releasePlayer() {
     if (player != null) {
-      player.release();
+      Log.d(LOG_TAG, metadataDispatcher.toString());
+      player.removeListener(playerListener);
+      player.removeAnalyticsListener(analyticsListener);
+      if (playerPool != null && !playerIsFallback) {
+        playerView.setPlayer(null);
+        playerPool.recycle(player);
+      } else {
+        player.release();
+      }
       player = null;
+      playerIsFallback = false;
+      playbackState = Player.STATE_IDLE;
+      seekPending = false;
       streamRequested = false;
     }
   }
@@ -209,7 +598,8 @@ public class SampleVideoPlayer {
   }
 
   public boolean isPlaying() {
-    return player.getPlayWhenReady();
+    // No player before the first play() or after release().
+    return player != null && player.getPlayWhenReady();
   }
 
   public boolean isStreamRequested() {
@@ -226,18 +616,21 @@ public class SampleVideoPlayer {
     if (player == null) {
       return 0;
     }
+    long startNs = beginProfiling(HotPathProfiler.Path.CURRENT_POSITION);
+    long positionMs = playheadSnapshot.getPositionMs(player);
+    endProfiling(HotPathProfiler.Path.CURRENT_POSITION, startNs);
+    return positionMs;
+  }
 
-    Timeline currentTimeline = player.getCurrentTimeline();
-    if (currentTimeline.isEmpty()) {
-      return player.getCurrentPosition();
-    }
-    Timeline.Window window = new Timeline.Window();
-    player.getCurrentTimeline().getWindow(player.getCurrentMediaItemIndex(), window);
-    if (window.isLive()) {
-      return player.getCurrentPosition() + window.windowStartTimeMs;
-    } else {
-      return player.getCurrentPosition();
+  /**
+   * Returns the playhead progress for IMA's polling. Reuses the previous update while the playhead
+   * does not move.
+   */
+  public VideoProgressUpdate getContentProgress() {
+    if (player == null) {
+      return VideoProgressUpdate.VIDEO_TIME_NOT_READY;
     }
+    return playheadSnapshot.getProgress(player);
   }
 
   public long getDuration() {
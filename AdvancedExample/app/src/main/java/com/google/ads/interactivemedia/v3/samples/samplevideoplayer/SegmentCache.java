@@ -0,0 +1,224 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.DefaultDataSource;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk LRU cache for stream manifests and segments, so that replays and snapback seeks are
+ * served locally instead of being fetched from the network again.
+ *
+ * <p>Only one SegmentCache may exist per app process, as the underlying SimpleCache locks its
+ * directory.
+ */
+@SuppressLint("UnsafeOptInUsageError")
+/* @SuppressLint is needed for new media3 APIs. */
+public class SegmentCache {
+
+  private static final String LOG_TAG = "SegmentCache";
+  private static final String CACHE_DIRECTORY = "media_segments";
+  // Longest release() waits for cancelled prefetches to stop writing.
+  private static final long RELEASE_TIMEOUT_MS = 500;
+
+  private final Context context;
+  private final SimpleCache cache;
+  // Prefetches in progress. Guarded by this.
+  private final Set<CacheWriter> prefetchWriters = new HashSet<>();
+  private boolean released;
+
+  // Updated from ExoPlayer's loader threads.
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong hitBytes = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong missBytes = new AtomicLong();
+
+  /**
+   * Creates a new SegmentCache.
+   *
+   * @param context the app's context.
+   * @param maxBytes size budget of the cache, in bytes. Least recently used content is evicted
+   *     once the budget is exceeded.
+   */
+  public SegmentCache(Context context, long maxBytes) {
+    this.context = context.getApplicationContext();
+    cache =
+        new SimpleCache(
+            new File(this.context.getCacheDir(), CACHE_DIRECTORY),
+            new LeastRecentlyUsedCacheEvictor(maxBytes),
+            new StandaloneDatabaseProvider(this.context));
+  }
+
+  /** Returns a DataSource.Factory that reads through the cache before going to the network. */
+  public CacheDataSource.Factory createDataSourceFactory() {
+    DataSource.Factory upstreamFactory =
+        new DefaultDataSource.Factory(context).setTransferListener(networkListener);
+    return new CacheDataSource.Factory()
+        .setCache(cache)
+        .setUpstreamDataSourceFactory(upstreamFactory)
+        .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+        .setEventListener(cacheListener);
+  }
+
+  /**
+   * Downloads the resource at the given URL into the cache. Blocks until done, so must not be
+   * called on the main thread. Does nothing once the cache is released, and stops early if it is
+   * released meanwhile.
+   */
+  public void prefetch(String url) {
+    CacheWriter writer;
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      writer =
+          new CacheWriter(
+              createDataSourceFactory().createDataSource(),
+              new DataSpec(Uri.parse(url)),
+              /* temporaryBuffer= */ null,
+              /* progressListener= */ null);
+      prefetchWriters.add(writer);
+    }
+    try {
+      writer.cache();
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Failed to prefetch " + url, e);
+    } finally {
+      synchronized (this) {
+        prefetchWriters.remove(writer);
+        notifyAll();
+      }
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getHitBytes() {
+    return hitBytes.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getMissBytes() {
+    return missBytes.get();
+  }
+
+  /** Returns the number of bytes currently stored in the cache. */
+  public long getCacheSpace() {
+    return cache.getCacheSpace();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "SegmentCache: %d hits (%d KB), %d misses (%d KB), %d KB stored",
+        hitCount.get(),
+        hitBytes.get() / 1024,
+        missCount.get(),
+        missBytes.get() / 1024,
+        cache.getCacheSpace() / 1024);
+  }
+
+  /**
+   * Cancels any prefetches and releases the cache. Waits briefly for the prefetches to stop, as
+   * they must not write into a released cache.
+   */
+  public void release() {
+    synchronized (this) {
+      released = true;
+      for (CacheWriter writer : prefetchWriters) {
+        writer.cancel();
+      }
+      long deadlineMs = SystemClock.elapsedRealtime() + RELEASE_TIMEOUT_MS;
+      long remainingMs = RELEASE_TIMEOUT_MS;
+      while (!prefetchWriters.isEmpty() && remainingMs > 0) {
+        try {
+          wait(remainingMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        remainingMs = deadlineMs - SystemClock.elapsedRealtime();
+      }
+      if (!prefetchWriters.isEmpty()) {
+        Log.w(LOG_TAG, "Releasing with " + prefetchWriters.size() + " prefetches still stopping");
+      }
+    }
+    cache.release();
+  }
+
+  private final CacheDataSource.EventListener cacheListener =
+      new CacheDataSource.EventListener() {
+        @Override
+        public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+          hitCount.incrementAndGet();
+          hitBytes.addAndGet(cachedBytesRead);
+        }
+
+        @Override
+        public void onCacheIgnored(int reason) {}
+      };
+
+  // Counts the requests and bytes that had to go to the network.
+  private final TransferListener networkListener =
+      new TransferListener() {
+        @Override
+        public void onTransferInitializing(
+            DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+          if (isNetwork) {
+            missCount.incrementAndGet();
+          }
+        }
+
+        @Override
+        public void onBytesTransferred(
+            DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+          if (isNetwork) {
+            missBytes.addAndGet(bytesTransferred);
+          }
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+      };
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times the stages of the DAI startup pipeline, from IMA SDK initialization to the first rendered
+ * frame, on the monotonic clock. Each session's breakdown is logged when its first frame renders,
+ * and stage durations are aggregated into histograms across sessions. Each stage is also emitted
+ * as a trace section named after it, such as "DAI:TAP_TO_FIRST_FRAME".
+ *
+ * <p>Must be used on the main thread.
+ */
+public class StartupTracer {
+
+  private static final String LOG_TAG = "StartupTracer";
+
+  /** Startup stages, in pipeline order. */
+  public enum Stage {
+    /** ImaSdkFactory.initialize(). */
+    SDK_INITIALIZE,
+    /** Creating the StreamDisplayContainer and AdsLoader, or reattaching reused ones. */
+    CREATE_ADS_LOADER,
+    /** From AdsLoader.requestStream() to onAdsManagerLoaded(). */
+    STREAM_REQUEST,
+    /** From StreamManager.init() to VideoStreamPlayer.loadUrl(). */
+    STREAM_MANAGER_INIT,
+    /** From SampleVideoPlayer.play() to the first rendered frame. */
+    PLAYER_PREPARE,
+    /** From the play button tap to the first rendered frame. */
+    TAP_TO_FIRST_FRAME
+  }
+
+  // Upper bounds of the histogram buckets, in milliseconds. The last bucket is unbounded.
+  private static final long[] BUCKET_BOUNDS_MS = {
+    5, 10, 20, 50, 100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 10000
+  };
+
+  private static final int STAGE_COUNT = Stage.values().length;
+  private static final String[] SECTION_NAMES = new String[STAGE_COUNT];
+
+  static {
+    for (Stage stage : Stage.values()) {
+      SECTION_NAMES[stage.ordinal()] = TraceSections.PREFIX + stage.name();
+    }
+  }
+
+  private final long[] stageStartNs = new long[STAGE_COUNT];
+  private final long[] sessionDurationsNs = new long[STAGE_COUNT];
+  private final int[][] histograms = new int[STAGE_COUNT][BUCKET_BOUNDS_MS.length + 1];
+  private final int[] histogramCounts = new int[STAGE_COUNT];
+  // Longest duration seen per stage, which bounds the unbounded last bucket.
+  private final long[] maxDurationsMs = new long[STAGE_COUNT];
+  private int sessionCount;
+
+  public StartupTracer() {
+    resetSession();
+  }
+
+  /** Marks the start of a stage. Restarts the stage if it was already running. */
+  public void begin(Stage stage) {
+    int index = stage.ordinal();
+    if (stageStartNs[index] != 0) {
+      TraceSections.endAsync(SECTION_NAMES[index]);
+    }
+    stageStartNs[index] = SystemClock.elapsedRealtimeNanos();
+    TraceSections.beginAsync(SECTION_NAMES[index]);
+  }
+
+  /**
+   * Marks the end of a stage. Ignored if the stage was not started. Ending {@link
+   * Stage#TAP_TO_FIRST_FRAME} completes the session.
+   */
+  public void end(Stage stage) {
+    int index = stage.ordinal();
+    if (stageStartNs[index] == 0) {
+      return;
+    }
+    sessionDurationsNs[index] = SystemClock.elapsedRealtimeNanos() - stageStartNs[index];
+    stageStartNs[index] = 0;
+    TraceSections.endAsync(SECTION_NAMES[index]);
+    if (stage == Stage.TAP_TO_FIRST_FRAME) {
+      completeSession();
+    }
+  }
+
+  /**
+   * Returns an upper bound on the given percentile of a stage's duration across sessions, in
+   * milliseconds: the bound of the histogram bucket the percentile falls in, or the longest
+   * duration seen if that is lower.
+   */
+  public long getPercentileMs(Stage stage, double percentile) {
+    int index = stage.ordinal();
+    int count = histogramCounts[index];
+    if (count == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    int seen = 0;
+    for (int bucket = 0; bucket < BUCKET_BOUNDS_MS.length; bucket++) {
+      seen += histograms[index][bucket];
+      if (seen >= rank) {
+        return Math.min(BUCKET_BOUNDS_MS[bucket], maxDurationsMs[index]);
+      }
+    }
+    return maxDurationsMs[index];
+  }
+
+  /** Returns p50, p90 and p99 of every stage across all sessions. */
+  @Override
+  public String toString() {
+    StringBuilder builder =
+        new StringBuilder(String.format(Locale.US, "Startup over %d sessions:", sessionCount));
+    for (Stage stage : Stage.values()) {
+      if (histogramCounts[stage.ordinal()] > 0) {
+        builder.append(
+            String.format(
+                Locale.US,
+                "\n  %s: p50 <=%d ms, p90 <=%d ms, p99 <=%d ms",
+                stage,
+                getPercentileMs(stage, 50),
+                getPercentileMs(stage, 90),
+                getPercentileMs(stage, 99)));
+      }
+    }
+    return builder.toString();
+  }
+
+  private void completeSession() {
+    StringBuilder breakdown = new StringBuilder("Startup session:");
+    for (Stage stage : Stage.values()) {
+      long durationNs = sessionDurationsNs[stage.ordinal()];
+      if (durationNs < 0) {
+        continue; // Stage did not run in this session, for example a prefetched stream request.
+      }
+      long durationMs = durationNs / 1_000_000;
+      breakdown.append(String.format(Locale.US, " %s=%d ms", stage, durationMs));
+      addToHistogram(stage.ordinal(), durationMs);
+    }
+    Log.i(LOG_TAG, breakdown.toString());
+    sessionCount++;
+    resetSession();
+  }
+
+  private void addToHistogram(int index, long durationMs) {
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS_MS.length && durationMs > BUCKET_BOUNDS_MS[bucket]) {
+      bucket++;
+    }
+    histograms[index][bucket]++;
+    histogramCounts[index]++;
+    maxDurationsMs[index] = Math.max(maxDurationsMs[index], durationMs);
+  }
+
+  private void resetSession() {
+    Arrays.fill(sessionDurationsNs, -1);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Emits the system trace sections that macrobenchmarks and Perfetto traces measure the sample
+ * with, such as with TraceSectionMetric. Sections are asynchronous, as they span callbacks rather
+ * than a single call, and are only emitted on API 29 and up.
+ */
+public final class TraceSections {
+
+  /** Prefixes every section name. */
+  public static final String PREFIX = "DAI:";
+
+  /** From onAdBreakStarted() to onAdBreakEnded(). */
+  public static final String AD_BREAK = PREFIX + "AdBreak";
+
+  /** From a seek past an unplayed ad break to the seek back after that break ends. */
+  public static final String SNAPBACK = PREFIX + "Snapback";
+
+  /** From scheduling IMA SDK initialization to the main thread going idle and running it. */
+  public static final String SDK_INIT_DEFERRED = PREFIX + "SdkInitDeferred";
+
+  /** Begins a section. Only one section of each name may be running at a time. */
+  public static void beginAsync(String name) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      Trace.beginAsyncSection(name, /* cookie= */ 0);
+    }
+  }
+
+  /** Ends a section started with {@link #beginAsync}. */
+  public static void endAsync(String name) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      Trace.endAsyncSection(name, /* cookie= */ 0);
+    }
+  }
+
+  private TraceSections() {}
+}
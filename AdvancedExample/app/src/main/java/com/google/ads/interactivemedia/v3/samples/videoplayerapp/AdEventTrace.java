@@ -0,0 +1,187 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+import com.google.ads.interactivemedia.v3.api.Ad;
+import com.google.ads.interactivemedia.v3.api.AdEvent.AdEventType;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records ad events, including AD_PROGRESS, into a preallocated binary ring buffer, so that a
+ * whole session can be traced without formatting strings or allocating per event. Once full, the
+ * oldest events are overwritten.
+ *
+ * <p>Each record holds the event type, a monotonic timestamp, the stream time, the ad and the cue
+ * point playing. Ad IDs are stored once in a small ring of their own and referenced by sequence
+ * number. Traces are exported to a file that {@code tools/AdEventTraceDecoder.java} prints. Each
+ * export holds the events recorded since the previous one.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class AdEventTrace {
+
+  private static final String LOG_TAG = "AdEventTrace";
+
+  /** Identifies trace files. Spells "ADTR". */
+  public static final int MAGIC = 0x41445452;
+
+  public static final int VERSION = 1;
+
+  /**
+   * Size of a record: type (int), ad ID sequence number (int), timestamp in nanoseconds (long),
+   * stream time in milliseconds (long) and cue point index (int).
+   */
+  public static final int RECORD_BYTES = 28;
+
+  /** Stored in place of an ad ID sequence number or cue point index when there is none. */
+  public static final int NONE = -1;
+
+  // Number of recent ad IDs kept. Older records lose their ad ID once it is overwritten.
+  private static final int AD_ID_SLOTS = 256;
+
+  private static final AdEventType[] EVENT_TYPES = AdEventType.values();
+
+  private final int capacity;
+  private final String[] adIds = new String[AD_ID_SLOTS];
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  // Buffer to record into after the next export. Null while an export is writing it.
+  private final AtomicReference<ByteBuffer> spareRecords = new AtomicReference<>();
+
+  private ByteBuffer records;
+
+  // Total number of records written. The next is written at recordCount % capacity.
+  private long recordCount;
+  // Total number of ad IDs seen. The latest is at (adIdCount - 1) % AD_ID_SLOTS.
+  private int adIdCount;
+
+  /**
+   * Creates a new AdEventTrace.
+   *
+   * @param capacity number of events kept.
+   */
+  public AdEventTrace(int capacity) {
+    this.capacity = capacity;
+    records = ByteBuffer.allocate(capacity * RECORD_BYTES);
+  }
+
+  /**
+   * Records an ad event.
+   *
+   * @param type the event's type.
+   * @param ad the event's ad, or null if it has none.
+   * @param streamTimeMs stream time when the event happened.
+   * @param cuePointIndex index of the cue point playing, or {@link #NONE}.
+   */
+  public void record(AdEventType type, Ad ad, long streamTimeMs, int cuePointIndex) {
+    int position = (int) (recordCount % capacity) * RECORD_BYTES;
+    records.putInt(position, type.ordinal());
+    records.putInt(position + 4, ad != null ? getAdIdSequence(ad.getAdId()) : NONE);
+    records.putLong(position + 8, SystemClock.elapsedRealtimeNanos());
+    records.putLong(position + 16, streamTimeMs);
+    records.putInt(position + 24, cuePointIndex);
+    recordCount++;
+  }
+
+  /** Returns the number of events kept. */
+  public int size() {
+    return (int) Math.min(recordCount, capacity);
+  }
+
+  /**
+   * Writes the recorded events to a file in the background. Recording goes on into a second
+   * buffer, so the events are neither copied nor changed during the export.
+   */
+  public void export(File file) {
+    ByteBuffer exportedRecords = records;
+    long exportedCount = recordCount;
+    ByteBuffer spare = spareRecords.getAndSet(null);
+    // A buffer is only allocated while an earlier export is still writing the spare.
+    records = spare != null ? spare : ByteBuffer.allocate(capacity * RECORD_BYTES);
+    recordCount = 0;
+    String[] adIdSnapshot = adIds.clone();
+    int adIdCountSnapshot = adIdCount;
+    executor.execute(
+        () -> {
+          write(file, exportedRecords, exportedCount, capacity, adIdSnapshot, adIdCountSnapshot);
+          spareRecords.set(exportedRecords);
+        });
+  }
+
+  /** Stops the export thread once pending exports are written. */
+  public void release() {
+    executor.shutdown();
+  }
+
+  private int getAdIdSequence(String adId) {
+    // Ads get several events each, so the latest ad ID nearly always matches.
+    for (int sequence = adIdCount - 1;
+        sequence >= 0 && sequence >= adIdCount - AD_ID_SLOTS;
+        sequence--) {
+      if (adId.equals(adIds[sequence % AD_ID_SLOTS])) {
+        return sequence;
+      }
+    }
+    adIds[adIdCount % AD_ID_SLOTS] = adId;
+    return adIdCount++;
+  }
+
+  // File layout: magic, version, event type names, ad IDs by sequence number, then the records
+  // oldest first.
+  private static void write(
+      File file,
+      ByteBuffer records,
+      long recordCount,
+      int capacity,
+      String[] adIds,
+      int adIdCount) {
+    int size = (int) Math.min(recordCount, capacity);
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(EVENT_TYPES.length);
+      for (AdEventType type : EVENT_TYPES) {
+        output.writeUTF(type.name());
+      }
+      int firstAdId = Math.max(0, adIdCount - AD_ID_SLOTS);
+      output.writeInt(adIdCount - firstAdId);
+      for (int sequence = firstAdId; sequence < adIdCount; sequence++) {
+        output.writeInt(sequence);
+        output.writeUTF(adIds[sequence % AD_ID_SLOTS]);
+      }
+      output.writeInt(size);
+      // Write the records oldest first, unrolling the ring.
+      int oldest = (int) ((recordCount - size) % capacity);
+      int tailRecords = Math.min(size, capacity - oldest);
+      output.write(records.array(), oldest * RECORD_BYTES, tailRecords * RECORD_BYTES);
+      output.write(records.array(), 0, (size - tailRecords) * RECORD_BYTES);
+      Log.i(LOG_TAG, "Exported " + size + " ad events to " + file);
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Failed to export ad events", e);
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores bookmarked content times across process restarts.
+ *
+ * <p>Bookmarks live in an in-memory LRU map bounded by entry count. Updates are batched and
+ * appended to a log file on a background thread, so a checkpoint costs the main thread a map
+ * update. The log is compacted to the live entries once it grows to twice the entry bound.
+ *
+ * <p>A record cut short by the process dying mid-write is dropped when the log is loaded, and cut
+ * off the log before the next append. Bookmarks whose write fails are kept for the next one.
+ */
+public class BookmarkStore {
+
+  /** Receives a bookmark read with {@link #get}. */
+  public interface Callback {
+    /** Called on the main thread with the bookmarked content time, or 0 if there is none. */
+    void onBookmarkRead(long contentTimeMs);
+  }
+
+  private static final String LOG_TAG = "BookmarkStore";
+  private static final String FILE_NAME = "bookmarks.log";
+
+  // Batches checkpoints made within this delay into one write.
+  private static final long FLUSH_DELAY_MS = 5_000;
+
+  private final File file;
+  private final int maxEntries;
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Guarded by this.
+  private final LinkedHashMap<String, Long> bookmarks;
+  private LinkedHashMap<String, Long> pendingWrites = new LinkedHashMap<>();
+  private boolean flushScheduled;
+
+  // Accessed on the executor thread only.
+  private int logRecordCount;
+  // Length of the complete records in the log, in bytes.
+  private long logLength;
+
+  private volatile long checkpointCount;
+  private volatile long checkpointTimeNs;
+  private volatile long writeCount;
+  private volatile long writeTimeNs;
+  private volatile long compactionCount;
+
+  /**
+   * Creates a new BookmarkStore and starts loading saved bookmarks in the background.
+   *
+   * @param context the app's context.
+   * @param maxEntries maximum number of bookmarks kept. The least recently used are dropped.
+   */
+  public BookmarkStore(Context context, int maxEntries) {
+    file = new File(context.getFilesDir(), FILE_NAME);
+    this.maxEntries = maxEntries;
+    bookmarks =
+        new LinkedHashMap<String, Long>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > BookmarkStore.this.maxEntries;
+          }
+        };
+    executor.execute(this::load);
+  }
+
+  /**
+   * Reads the bookmarked content time for a video once saved bookmarks are loaded, without
+   * blocking the calling thread.
+   */
+  public void get(String id, Callback callback) {
+    // Runs after load(), as the executor runs tasks in order.
+    executor.execute(
+        () -> {
+          long contentTimeMs;
+          synchronized (this) {
+            Long bookmark = bookmarks.get(id);
+            contentTimeMs = bookmark != null ? bookmark : 0;
+          }
+          mainHandler.post(() -> callback.onBookmarkRead(contentTimeMs));
+        });
+  }
+
+  /** Bookmarks a content time for a video. The write happens later, in a batch. */
+  public void put(String id, long contentTimeMs) {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    boolean scheduleFlush;
+    synchronized (this) {
+      bookmarks.put(id, contentTimeMs);
+      pendingWrites.put(id, contentTimeMs);
+      scheduleFlush = !flushScheduled;
+      flushScheduled = true;
+      checkpointCount++;
+      checkpointTimeNs += SystemClock.elapsedRealtimeNanos() - startNs;
+    }
+    if (scheduleFlush) {
+      executor.schedule(this::writePending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Writes pending bookmarks without waiting for the batch delay. */
+  public void flush() {
+    executor.execute(this::writePending);
+  }
+
+  /** Writes pending bookmarks and stops the background thread. */
+  public void release() {
+    flush();
+    executor.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "Bookmarks: %d checkpoints, %.1f us per checkpoint, %d writes, %.2f ms per write,"
+            + " %d compactions",
+        checkpointCount,
+        checkpointCount == 0 ? 0 : checkpointTimeNs / 1e3 / checkpointCount,
+        writeCount,
+        writeCount == 0 ? 0 : writeTimeNs / 1e6 / writeCount,
+        compactionCount);
+  }
+
+  private void load() {
+    if (!file.exists()) {
+      return;
+    }
+    // The log is bounded by compaction, so it is read whole, which tells where each record ends.
+    byte[] log = new byte[(int) file.length()];
+    try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+      input.readFully(log);
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Failed to load bookmarks", e);
+      // Appends go after whatever the log holds, as it could not be checked.
+      logLength = file.length();
+      return;
+    }
+    ByteArrayInputStream bytes = new ByteArrayInputStream(log);
+    DataInputStream input = new DataInputStream(bytes);
+    try {
+      while (bytes.available() > 0) {
+        String id = input.readUTF();
+        long contentTimeMs = input.readLong();
+        synchronized (this) {
+          // Bookmarks set before loading finished are newer than the saved ones.
+          if (!pendingWrites.containsKey(id)) {
+            bookmarks.put(id, contentTimeMs);
+          }
+        }
+        logRecordCount++;
+        logLength = log.length - bytes.available();
+      }
+    } catch (EOFException e) {
+      // A record cut short by the process dying mid-write. It is cut off before the next append.
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Dropping malformed bookmarks", e);
+    }
+  }
+
+  private void writePending() {
+    Map<String, Long> writes;
+    synchronized (this) {
+      flushScheduled = false;
+      if (pendingWrites.isEmpty()) {
+        return;
+      }
+      writes = pendingWrites;
+      pendingWrites = new LinkedHashMap<>();
+    }
+
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    // A failed compaction leaves the old log in place, so the writes are appended to it instead.
+    if (logRecordCount + writes.size() <= 2 * maxEntries || !compact()) {
+      append(writes);
+    }
+    writeCount++;
+    writeTimeNs += SystemClock.elapsedRealtimeNanos() - startNs;
+  }
+
+  private void append(Map<String, Long> writes) {
+    try (FileOutputStream fileOutput = new FileOutputStream(file, /* append= */ true)) {
+      // Cut off a partial record left by a failed write or by the process dying mid-write.
+      if (fileOutput.getChannel().size() > logLength) {
+        fileOutput.getChannel().truncate(logLength);
+      }
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+      for (Map.Entry<String, Long> entry : writes.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeLong(entry.getValue());
+      }
+      output.flush();
+      logRecordCount += writes.size();
+      logLength += output.size();
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Failed to write bookmarks", e);
+      requeue(writes);
+    }
+  }
+
+  // Puts writes back in the queue for the next flush, unless newer ones replaced them.
+  private synchronized void requeue(Map<String, Long> writes) {
+    for (Map.Entry<String, Long> entry : writes.entrySet()) {
+      if (!pendingWrites.containsKey(entry.getKey())) {
+        pendingWrites.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  // Rewrites the log with only the live bookmarks. Returns whether the log was replaced.
+  private boolean compact() {
+    Map<String, Long> snapshot;
+    synchronized (this) {
+      snapshot = new LinkedHashMap<>(bookmarks);
+    }
+    File tempFile = new File(file.getPath() + ".tmp");
+    long tempLength;
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      for (Map.Entry<String, Long> entry : snapshot.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeLong(entry.getValue());
+      }
+      output.flush();
+      tempLength = output.size();
+    } catch (IOException e) {
+      Log.w(LOG_TAG, "Failed to compact bookmarks", e);
+      tempFile.delete();
+      return false;
+    }
+    if (!tempFile.renameTo(file)) {
+      Log.w(LOG_TAG, "Failed to replace bookmarks with compacted ones");
+      tempFile.delete();
+      return false;
+    }
+    logRecordCount = snapshot.size();
+    logLength = tempLength;
+    compactionCount++;
+    return true;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.SystemClock;
+import com.google.ads.interactivemedia.v3.api.player.VideoStreamPlayer.VideoStreamPlayerCallback;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Forwards player events to the VideoStreamPlayerCallbacks registered by IMA.
+ *
+ * <p>Callbacks are kept in an array that is replaced, never changed, when a callback is added or
+ * removed. Callbacks may be added and removed on any thread, including while an event is being
+ * dispatched, and each dispatch reads the array once, without taking a lock or allocating. A
+ * callback removed during a dispatch may still receive that event.
+ *
+ * <p>Dispatch latencies are kept in a histogram with power of two buckets.
+ */
+public class CallbackDispatcher implements VideoStreamPlayerCallback {
+
+  private static final VideoStreamPlayerCallback[] NO_CALLBACKS = new VideoStreamPlayerCallback[0];
+  // Bucket i counts dispatches that took less than 2^i nanoseconds, and the last bucket the rest.
+  private static final int BUCKET_COUNT = 32;
+
+  private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+  private volatile VideoStreamPlayerCallback[] callbacks = NO_CALLBACKS;
+
+  /** Adds a callback, unless it is already added. */
+  public synchronized void add(VideoStreamPlayerCallback callback) {
+    VideoStreamPlayerCallback[] current = callbacks;
+    for (VideoStreamPlayerCallback existing : current) {
+      if (existing == callback) {
+        return;
+      }
+    }
+    VideoStreamPlayerCallback[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = callback;
+    callbacks = updated;
+  }
+
+  /** Removes a callback, if it is added. */
+  public synchronized void remove(VideoStreamPlayerCallback callback) {
+    VideoStreamPlayerCallback[] current = callbacks;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i] == callback) {
+        VideoStreamPlayerCallback[] updated = new VideoStreamPlayerCallback[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, i);
+        System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+        callbacks = updated;
+        return;
+      }
+    }
+  }
+
+  /** Removes every callback. */
+  public synchronized void clear() {
+    callbacks = NO_CALLBACKS;
+  }
+
+  @Override
+  public void onUserTextReceived(String userText) {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    for (VideoStreamPlayerCallback callback : callbacks) {
+      callback.onUserTextReceived(userText);
+    }
+    recordLatency(startNs);
+  }
+
+  @Override
+  public void onContentComplete() {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    for (VideoStreamPlayerCallback callback : callbacks) {
+      callback.onContentComplete();
+    }
+    recordLatency(startNs);
+  }
+
+  @Override
+  public void onPause() {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    for (VideoStreamPlayerCallback callback : callbacks) {
+      callback.onPause();
+    }
+    recordLatency(startNs);
+  }
+
+  @Override
+  public void onResume() {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    for (VideoStreamPlayerCallback callback : callbacks) {
+      callback.onResume();
+    }
+    recordLatency(startNs);
+  }
+
+  @Override
+  public void onVolumeChanged(int percentage) {
+    long startNs = SystemClock.elapsedRealtimeNanos();
+    for (VideoStreamPlayerCallback callback : callbacks) {
+      callback.onVolumeChanged(percentage);
+    }
+    recordLatency(startNs);
+  }
+
+  /** Returns the number of dispatches that took less than 2^bucket nanoseconds, per bucket. */
+  public long[] getLatencyHistogram() {
+    long[] histogram = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      histogram[i] = latencyBuckets.get(i);
+    }
+    return histogram;
+  }
+
+  /** Returns the callback count and the non-empty buckets of the latency histogram. */
+  @Override
+  public String toString() {
+    StringBuilder builder =
+        new StringBuilder("Callback dispatch: ").append(callbacks.length).append(" callbacks,");
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      long count = latencyBuckets.get(i);
+      if (count > 0) {
+        builder.append(" <").append(1L << i).append(" ns: ").append(count).append(',');
+      }
+    }
+    builder.setLength(builder.length() - 1);
+    return builder.toString();
+  }
+
+  private void recordLatency(long startNs) {
+    long latencyNs = SystemClock.elapsedRealtimeNanos() - startNs;
+    int bucket = Math.min(64 - Long.numberOfLeadingZeros(latencyNs), BUCKET_COUNT - 1);
+    latencyBuckets.incrementAndGet(bucket);
+  }
+}
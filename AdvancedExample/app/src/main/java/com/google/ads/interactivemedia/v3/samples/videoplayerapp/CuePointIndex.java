@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import com.google.ads.interactivemedia.v3.api.CuePoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sorted index of a VOD stream's cue points, so that snapback on seek and the seek bar's ad
+ * markers are resolved locally with binary search instead of calling into the StreamManager on
+ * every seek.
+ *
+ * <p>The index also maps between stream time and content time. The mapping is piecewise linear:
+ * content time stands still during an ad break and advances with stream time between breaks.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class CuePointIndex {
+
+  /** Returned by lookups when there is no matching cue point. */
+  public static final int INDEX_UNSET = -1;
+
+  private long[] startTimesMs = new long[0];
+  private long[] endTimesMs = new long[0];
+  private boolean[] played = new boolean[0];
+  // Total duration of the ad breaks before each cue point.
+  private long[] adDurationBeforeMs = new long[0];
+  // Content time at which each ad break plays.
+  private long[] adBreakContentTimesMs = new long[0];
+
+  /** Replaces the indexed cue points. Call on CUEPOINTS_CHANGED. */
+  public void update(List<CuePoint> cuePoints) {
+    List<CuePoint> sortedCuePoints = new ArrayList<>(cuePoints);
+    Collections.sort(
+        sortedCuePoints, (a, b) -> Long.compare(a.getStartTimeMs(), b.getStartTimeMs()));
+    int size = sortedCuePoints.size();
+    long[] startTimesMs = new long[size];
+    long[] endTimesMs = new long[size];
+    boolean[] played = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      CuePoint cuePoint = sortedCuePoints.get(i);
+      startTimesMs[i] = cuePoint.getStartTimeMs();
+      endTimesMs[i] = cuePoint.getEndTimeMs();
+      played[i] = cuePoint.isPlayed();
+    }
+    update(startTimesMs, endTimesMs, played);
+  }
+
+  /**
+   * Replaces the indexed cue points with ad breaks given as arrays, so the index can also be built
+   * without the IMA SDK, for example from recorded or generated ad breaks. The index takes
+   * ownership of the arrays.
+   *
+   * @param startTimesMs start times of the ad breaks, in ascending order.
+   * @param endTimesMs end times of the ad breaks, in the same order.
+   * @param played whether each ad break was played, in the same order.
+   */
+  public void update(long[] startTimesMs, long[] endTimesMs, boolean[] played) {
+    int size = startTimesMs.length;
+    this.startTimesMs = startTimesMs;
+    this.endTimesMs = endTimesMs;
+    this.played = played;
+    adDurationBeforeMs = new long[size];
+    adBreakContentTimesMs = new long[size];
+    long adDurationMs = 0;
+    for (int i = 0; i < size; i++) {
+      adDurationBeforeMs[i] = adDurationMs;
+      adBreakContentTimesMs[i] = startTimesMs[i] - adDurationMs;
+      adDurationMs += endTimesMs[i] - startTimesMs[i];
+    }
+  }
+
+  /**
+   * Returns the content time for a stream time. Stream times inside an ad break map to the
+   * content time the break plays at.
+   */
+  public long getContentTimeMs(long streamTimeMs) {
+    int index = getPreviousIndex(streamTimeMs);
+    if (index == INDEX_UNSET) {
+      return streamTimeMs;
+    }
+    if (streamTimeMs < endTimesMs[index]) {
+      return adBreakContentTimesMs[index];
+    }
+    return streamTimeMs - adDurationBeforeMs[index] - (endTimesMs[index] - startTimesMs[index]);
+  }
+
+  /**
+   * Returns the stream time for a content time. A content time at which an ad break plays maps to
+   * the end of the break.
+   */
+  public long getStreamTimeMs(long contentTimeMs) {
+    int low = 0;
+    int high = adBreakContentTimesMs.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (adBreakContentTimesMs[mid] <= contentTimeMs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int index = low - 1;
+    if (index < 0) {
+      return contentTimeMs;
+    }
+    return contentTimeMs + adDurationBeforeMs[index] + (endTimesMs[index] - startTimesMs[index]);
+  }
+
+  /**
+   * Converts many stream times to content times at once.
+   *
+   * @param streamTimesMs stream times to convert.
+   * @param contentTimesMs array to write the content times to, at the same positions.
+   */
+  public void getContentTimesMs(long[] streamTimesMs, long[] contentTimesMs) {
+    for (int i = 0; i < streamTimesMs.length; i++) {
+      contentTimesMs[i] = getContentTimeMs(streamTimesMs[i]);
+    }
+  }
+
+  /**
+   * Converts many content times to stream times at once.
+   *
+   * @param contentTimesMs content times to convert.
+   * @param streamTimesMs array to write the stream times to, at the same positions.
+   */
+  public void getStreamTimesMs(long[] contentTimesMs, long[] streamTimesMs) {
+    for (int i = 0; i < contentTimesMs.length; i++) {
+      streamTimesMs[i] = getStreamTimeMs(contentTimesMs[i]);
+    }
+  }
+
+  public int size() {
+    return startTimesMs.length;
+  }
+
+  /** Returns the index of the last cue point starting at or before the given stream time. */
+  public int getPreviousIndex(long streamTimeMs) {
+    int index = getFirstIndexAfter(streamTimeMs) - 1;
+    return index >= 0 ? index : INDEX_UNSET;
+  }
+
+  /** Returns the index of the first cue point starting after the given stream time. */
+  public int getNextIndex(long streamTimeMs) {
+    int index = getFirstIndexAfter(streamTimeMs);
+    return index < startTimesMs.length ? index : INDEX_UNSET;
+  }
+
+  /**
+   * Returns the index of the ad break a seek skipped and should snap back to, or {@link
+   * #INDEX_UNSET} if the seek can go ahead. That is the last break starting at or before the seek
+   * target, if it was not played and does not end before the bookmark the stream resumed from.
+   *
+   * @param seekTimeMs stream time the user seeks to.
+   * @param bookmarkStreamTimeMs stream time playback resumed from, or 0.
+   */
+  public int getSnapBackIndex(long seekTimeMs, long bookmarkStreamTimeMs) {
+    int index = getPreviousIndex(seekTimeMs);
+    if (index == INDEX_UNSET || played[index] || endTimesMs[index] <= bookmarkStreamTimeMs) {
+      return INDEX_UNSET;
+    }
+    return index;
+  }
+
+  /** Returns the index of the cue point playing at the given stream time. */
+  public int getContainingIndex(long streamTimeMs) {
+    int index = getPreviousIndex(streamTimeMs);
+    return (index != INDEX_UNSET && streamTimeMs < endTimesMs[index]) ? index : INDEX_UNSET;
+  }
+
+  public long getStartTimeMs(int index) {
+    return startTimesMs[index];
+  }
+
+  public long getEndTimeMs(int index) {
+    return endTimesMs[index];
+  }
+
+  public boolean isPlayed(int index) {
+    return played[index];
+  }
+
+  public void markPlayed(int index) {
+    played[index] = true;
+  }
+
+  /** Returns the start times of all cue points, in ascending order. Must not be modified. */
+  public long[] getStartTimesMs() {
+    return startTimesMs;
+  }
+
+  /** Returns the end times of all cue points, in start time order. Must not be modified. */
+  public long[] getEndTimesMs() {
+    return endTimesMs;
+  }
+
+  /** Returns the played state of all cue points, in start time order. Must not be modified. */
+  public boolean[] getPlayed() {
+    return played;
+  }
+
+  private int getFirstIndexAfter(long streamTimeMs) {
+    int low = 0;
+    int high = startTimesMs.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (startTimesMs[mid] <= streamTimeMs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.Handler;
+import android.util.Log;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+/**
+ * A fixed-capacity log of ad events, shown in a TextView. Messages are kept in a ring buffer, so
+ * memory stays constant over a long live session, and the view is redrawn at most once per frame
+ * with only the most recent messages, however many arrive in between.
+ *
+ * <p>Every message goes to logcat; only those at or above the minimum priority are shown. Logcat
+ * writes are system calls, so they may be moved off the main thread with {@link
+ * #setLogcatHandler}.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class EventLog implements SampleAdsWrapper.Logger, Choreographer.FrameCallback {
+
+  private final String logTag;
+  private final String[] messages;
+  private final int visibleMessageCount;
+  private final StringBuilder text = new StringBuilder();
+
+  private int minPriority = Log.INFO;
+  private TextView textView;
+  private Handler logcatHandler;
+  private boolean frameScheduled;
+  // Total number of messages added. The newest is at (messageCount - 1) % capacity.
+  private long messageCount;
+
+  /**
+   * Creates a new EventLog.
+   *
+   * @param logTag tag to write messages to logcat with.
+   * @param capacity number of recent messages kept.
+   * @param visibleMessageCount number of recent messages shown.
+   */
+  public EventLog(String logTag, int capacity, int visibleMessageCount) {
+    this.logTag = logTag;
+    messages = new String[capacity];
+    this.visibleMessageCount = Math.min(visibleMessageCount, capacity);
+  }
+
+  /** Sets the view to show the log in, or null to stop showing it. */
+  public void setTextView(TextView textView) {
+    this.textView = textView;
+    if (textView == null) {
+      Choreographer.getInstance().removeFrameCallback(this);
+      frameScheduled = false;
+    } else {
+      scheduleFrame();
+    }
+  }
+
+  /** Sets a handler to write to logcat on, or null to write on the calling thread. */
+  public void setLogcatHandler(Handler logcatHandler) {
+    this.logcatHandler = logcatHandler;
+  }
+
+  /** Sets the minimum priority of the messages shown, such as {@link Log#INFO}. */
+  public void setMinPriority(int minPriority) {
+    this.minPriority = minPriority;
+  }
+
+  @Override
+  public void log(String logMessage) {
+    log(Log.INFO, logMessage);
+  }
+
+  @Override
+  public void log(int priority, String logMessage) {
+    if (logcatHandler != null) {
+      logcatHandler.post(() -> Log.println(priority, logTag, logMessage));
+    } else {
+      Log.println(priority, logTag, logMessage);
+    }
+    if (priority < minPriority) {
+      return;
+    }
+    messages[(int) (messageCount % messages.length)] = logMessage;
+    messageCount++;
+    scheduleFrame();
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    frameScheduled = false;
+    if (textView == null) {
+      return;
+    }
+    text.setLength(0);
+    long firstVisible = Math.max(0, messageCount - visibleMessageCount);
+    for (long i = firstVisible; i < messageCount; i++) {
+      text.append(messages[(int) (i % messages.length)]);
+    }
+    textView.setText(text.toString());
+  }
+
+  private void scheduleFrame() {
+    if (textView != null && !frameScheduled) {
+      frameScheduled = true;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+}
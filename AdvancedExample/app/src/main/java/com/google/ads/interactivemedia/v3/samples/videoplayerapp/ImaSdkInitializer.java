@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import com.google.ads.interactivemedia.v3.api.ImaSdkFactory;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.StartupTracer;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.TraceSections;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Initializes the IMA SDK once per process, without holding up the first frame of the app.
+ *
+ * <p>{@link #scheduleOnIdle} defers initialization until the main thread first runs out of work,
+ * which is after the first frame is drawn. Code that uses the SDK calls {@link #ensureInitialized}
+ * first, which initializes the SDK at once if that has not happened yet. A stream requested
+ * before the main thread goes idle is then no later than with initialization in onCreate().
+ * Optional work that uses the SDK, such as prefetching, waits with {@link #runWhenInitialized}
+ * instead, so that it never pulls initialization ahead of the first frame.
+ *
+ * <p>The wait for idle time is emitted as the {@link TraceSections#SDK_INIT_DEFERRED} trace
+ * section, and initialization itself as the {@link StartupTracer.Stage#SDK_INITIALIZE} stage.
+ *
+ * <p>Must be used on the main thread.
+ */
+public final class ImaSdkInitializer {
+
+  private static boolean initialized;
+  private static MessageQueue.IdleHandler idleHandler;
+  private static StartupTracer startupTracer;
+  private static final List<Runnable> pendingWork = new ArrayList<>();
+
+  /**
+   * Schedules initialization for when the main thread is next idle, unless it is already
+   * scheduled or done.
+   *
+   * @param context any context of the app. Only its application context is kept.
+   * @param tracer tracer to report initialization to, or null.
+   */
+  public static void scheduleOnIdle(Context context, StartupTracer tracer) {
+    if (initialized || idleHandler != null) {
+      return;
+    }
+    Context applicationContext = context.getApplicationContext();
+    startupTracer = tracer;
+    idleHandler =
+        () -> {
+          idleHandler = null;
+          TraceSections.endAsync(TraceSections.SDK_INIT_DEFERRED);
+          initialize(applicationContext);
+          return false;
+        };
+    TraceSections.beginAsync(TraceSections.SDK_INIT_DEFERRED);
+    Looper.myQueue().addIdleHandler(idleHandler);
+  }
+
+  /** Initializes the SDK now, unless that is already done. Call before using the SDK. */
+  public static void ensureInitialized(Context context) {
+    if (initialized) {
+      return;
+    }
+    if (idleHandler != null) {
+      Looper.myQueue().removeIdleHandler(idleHandler);
+      idleHandler = null;
+      TraceSections.endAsync(TraceSections.SDK_INIT_DEFERRED);
+    }
+    initialize(context.getApplicationContext());
+  }
+
+  /**
+   * Runs work that uses the SDK once it is initialized, without initializing it any earlier. The
+   * work runs at once if the SDK is already initialized, or is posted to the main thread after
+   * initialization.
+   */
+  public static void runWhenInitialized(Runnable work) {
+    if (initialized) {
+      work.run();
+      return;
+    }
+    pendingWork.add(work);
+  }
+
+  /** Drops work passed to {@link #runWhenInitialized} that has not run yet. */
+  public static void removePendingWork(Runnable work) {
+    pendingWork.remove(work);
+  }
+
+  private static void initialize(Context applicationContext) {
+    initialized = true;
+    if (startupTracer != null) {
+      startupTracer.begin(StartupTracer.Stage.SDK_INITIALIZE);
+    }
+    ImaSdkFactory.getInstance().initialize(applicationContext, MyActivity.getImaSdkSettings());
+    if (startupTracer != null) {
+      startupTracer.end(StartupTracer.Stage.SDK_INITIALIZE);
+      startupTracer = null;
+    }
+    // Posted, as initialization may be called from within code that is not done setting up.
+    Handler handler = new Handler(Looper.getMainLooper());
+    for (Runnable work : pendingWork) {
+      handler.post(work);
+    }
+    pendingWork.clear();
+  }
+
+  private ImaSdkInitializer() {}
+}
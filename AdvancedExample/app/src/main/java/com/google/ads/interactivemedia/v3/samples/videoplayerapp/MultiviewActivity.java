@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.media3.ui.PlayerView;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.MultiviewCoordinator;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.SampleVideoPlayer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays the live streams of the playlist in a 2x2 grid, each with its own AdsLoader and
+ * StreamManager. Tap a tile to focus it: the focused tile plays at full quality with audio, and
+ * the others share what is left of the bandwidth budget, muted.
+ */
+public class MultiviewActivity extends AppCompatActivity {
+
+  private static final String APP_LOG_TAG = "ImaDaiExample";
+
+  private static final int[] TILE_IDS = {R.id.tile0, R.id.tile1, R.id.tile2, R.id.tile3};
+
+  // Video bitrate shared by all tiles, in bits per second.
+  private static final int BITRATE_BUDGET = 8_000_000;
+  // Many devices have no more than four hardware video decoders, some of them in use elsewhere.
+  private static final int MAX_VIDEO_DECODERS = 3;
+
+  private final List<SampleVideoPlayer> videoPlayers = new ArrayList<>();
+  private final List<SampleAdsWrapper> sampleAdsWrappers = new ArrayList<>();
+  private MultiviewCoordinator coordinator;
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setContentView(R.layout.activity_multiview);
+
+    List<VideoListFragment.VideoListItem> liveItems = new ArrayList<>();
+    for (VideoListFragment.VideoListItem item : VideoListFragment.getVideoListItems()) {
+      if (!item.isVod()) {
+        liveItems.add(item);
+      }
+    }
+
+    coordinator = new MultiviewCoordinator(BITRATE_BUDGET, MAX_VIDEO_DECODERS);
+    for (int i = 0; i < TILE_IDS.length; i++) {
+      View tileView = findViewById(TILE_IDS[i]);
+      PlayerView playerView = tileView.findViewById(R.id.videoView);
+      // Taps go to the tile, to focus it.
+      playerView.setUseController(false);
+      SampleVideoPlayer videoPlayer = new SampleVideoPlayer(this, playerView);
+      SampleAdsWrapper sampleAdsWrapper =
+          new SampleAdsWrapper(this, videoPlayer, tileView.findViewById(R.id.adUiContainer));
+      sampleAdsWrapper.setFallbackUrl(MyActivity.FALLBACK_STREAM_URL);
+      String tileName = "Tile " + i + ": ";
+      sampleAdsWrapper.setLogger(logMessage -> Log.i(APP_LOG_TAG, tileName + logMessage));
+
+      int tile = coordinator.addTile(videoPlayer);
+      tileView.setOnClickListener(view -> coordinator.setFocusedTile(tile));
+      videoPlayers.add(videoPlayer);
+      sampleAdsWrappers.add(sampleAdsWrapper);
+
+      sampleAdsWrapper.requestAndPlayAds(
+          liveItems.get(i % liveItems.size()), /* bookMarkTimeMs= */ 0);
+    }
+  }
+
+  @Override
+  public void onPause() {
+    super.onPause();
+    for (SampleVideoPlayer videoPlayer : videoPlayers) {
+      if (videoPlayer.isPlaying()) {
+        videoPlayer.pause();
+      }
+    }
+  }
+
+  @Override
+  public void onResume() {
+    super.onResume();
+    for (SampleVideoPlayer videoPlayer : videoPlayers) {
+      if (videoPlayer.isStreamRequested() && !videoPlayer.isPlaying()) {
+        videoPlayer.play();
+      }
+    }
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    Log.i(APP_LOG_TAG, coordinator.toString());
+    // Releasing a wrapper also releases its player.
+    for (SampleAdsWrapper sampleAdsWrapper : sampleAdsWrappers) {
+      sampleAdsWrapper.release();
+    }
+  }
+}
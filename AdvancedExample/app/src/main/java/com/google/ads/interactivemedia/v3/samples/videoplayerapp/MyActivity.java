@@ -16,12 +16,16 @@
 
 package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
 
+import android.content.Intent;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
@@ -33,11 +37,21 @@ import androidx.constraintlayout.widget.ConstraintSet;
 import androidx.fragment.app.Fragment;
 import com.google.ads.interactivemedia.v3.api.ImaSdkFactory;
 import com.google.ads.interactivemedia.v3.api.ImaSdkSettings;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.AdSegmentMemoryCache;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.BackgroundThread;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.BandwidthEstimateStore;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.CuePointLoadControl;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.ExoPlayerPool;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.HotPathProfiler;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.MockStitchingServer;
 import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.SampleVideoPlayer;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.SegmentCache;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.StartupTracer;
+import java.io.File;
+import java.io.IOException;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
-import java.util.HashMap;
 
 /** Main Activity that plays media using {@link SampleVideoPlayer}. */
 public class MyActivity extends AppCompatActivity {
@@ -45,17 +59,89 @@ public class MyActivity extends AppCompatActivity {
   private static final String PLAYLIST_FRAGMENT_TAG = "video_playlist_fragment_tag";
   private static final String VIDEO_FRAGMENT_TAG = "video_example_fragment_tag";
 
-  private static final String FALLBACK_STREAM_URL =
+  static final String FALLBACK_STREAM_URL =
       "https://storage.googleapis.com/interactive-media-ads/media/bbb.m3u8";
+  private static final long SEGMENT_CACHE_MAX_BYTES = 100 * 1024 * 1024;
+  private static final long AD_SEGMENT_CACHE_MAX_BYTES = 32 * 1024 * 1024;
+  private static final int MAX_BOOKMARKS = 1000;
+  private static final long BOOKMARK_INTERVAL_MS = 1000;
+  private static final int EVENT_LOG_CAPACITY = 500;
+  private static final int EVENT_LOG_VISIBLE_MESSAGES = 50;
+  private static final int AD_EVENT_TRACE_CAPACITY = 16 * 1024;
+  private static final String AD_EVENT_TRACE_FILE_NAME = "ad_events.trace";
+  // Logs the statistics of every component and exports the ad event trace each time a video is
+  // left. Turn on to collect measurements.
+  private static final boolean DIAGNOSTICS_ENABLED = false;
+  // The flags below turn on experimental optimizations, each off by default until it is measured
+  // on the devices the app targets.
+  // Moves playback loops to a shared audio priority thread, and logcat writes and cache
+  // bookkeeping to a background priority thread. Compare the AD_TRANSITION timings logged by the
+  // hot path profiler with this on and off.
+  private static final boolean PLAYBACK_THREAD_ENABLED = false;
+  // Keeps one AdsLoader and StreamDisplayContainer across video selections. Compare the
+  // CREATE_ADS_LOADER timings and the setup memory logged with this on and off.
+  private static final boolean ADS_LOADER_REUSE_ENABLED = false;
+  // Prepares the fallback stream during each stream request. Compare the failover gaps logged by
+  // SampleVideoPlayer with this on and off.
+  private static final boolean FALLBACK_PREWARM_ENABLED = false;
+  // Gives stream requests a deadline, retries them and sends sessions to the fallback while
+  // requests keep failing. Compare the request outcomes it logs with the failures seen without it.
+  private static final boolean STREAM_REQUEST_SUPERVISOR_ENABLED = false;
+  private static final long STREAM_REQUEST_DEADLINE_MS = 8000;
+  private static final int STREAM_REQUEST_MAX_RETRIES = 2;
+  private static final long STREAM_REQUEST_RETRY_DELAY_MS = 500;
+  // Sessions in a row that end on the fallback before new sessions skip the stream request.
+  private static final int STREAM_REQUEST_FAILURE_THRESHOLD = 3;
+  private static final long STREAM_REQUEST_CIRCUIT_OPEN_MS = 60_000;
+  // Plays a local mock of the fallback stream with stitched ad breaks, without any IMA request.
+  // The mock's ad breaks drive the cue points and ad break callbacks, so that playback
+  // measurements are repeatable offline once the sources are stored. Also turned on by launching
+  // the activity with EXTRA_MOCK_STREAM_SERVER set, as the macrobenchmarks do.
+  private static final boolean MOCK_STREAM_SERVER_ENABLED = false;
+  private static final String EXTRA_MOCK_STREAM_SERVER = "mock_stream_server";
+  private static final long[] MOCK_AD_BREAK_CONTENT_TIMES_MS = {0, 60_000, 180_000};
+  private static final int MOCK_AD_SEGMENT_COUNT = 2;
   private static final String APP_LOG_TAG = "ImaDaiExample";
   private static final String PLAYER_TYPE = "DAISamplePlayer";
   private static ImaSdkSettings imaSdkSettings;
 
   private SampleVideoPlayer videoPlayer;
   private SampleAdsWrapper sampleAdsWrapper;
+  // Plays the next video selection, and prefetches its stream until then. Outlives video
+  // selections when ADS_LOADER_REUSE_ENABLED, attached to one at a time.
+  private SampleAdsWrapper retainedAdsWrapper;
+  // Whether retainedAdsWrapper served an earlier selection, rather than only being created for a
+  // prefetch, so that setup memory is attributed to a reused AdsLoader only when it was reused.
+  private boolean retainedAdsWrapperServedSelection;
+  private EventLog eventLog;
+  private ExoPlayerPool playerPool;
+  private SegmentCache segmentCache;
+  private StreamPrefetcher streamPrefetcher;
+  // The likely next selection, waiting for the SDK to be initialized before it is prefetched.
+  private VideoListFragment.VideoListItem focusedVideoItem;
+  private final Runnable prefetchFocusedVideo = this::prefetchFocusedVideo;
+  private MockStitchingServer mockStreamServer;
+  // Shared by every player, as pooled players keep the LoadControl they were built with.
+  private final CuePointLoadControl loadControl = new CuePointLoadControl();
+  private BandwidthEstimateStore bandwidthEstimateStore;
+  private final StartupTracer startupTracer = new StartupTracer();
+  private final AdEventTrace adEventTrace = new AdEventTrace(AD_EVENT_TRACE_CAPACITY);
+  private final HotPathProfiler hotPathProfiler = new HotPathProfiler();
+  private final SetupMemoryMeter setupMemoryMeter = new SetupMemoryMeter();
+  // Shared by every session, so that the circuit breaker sees failures across them.
+  private final StreamRequestSupervisor requestSupervisor =
+      new StreamRequestSupervisor(
+          STREAM_REQUEST_DEADLINE_MS,
+          STREAM_REQUEST_MAX_RETRIES,
+          STREAM_REQUEST_RETRY_DELAY_MS,
+          STREAM_REQUEST_FAILURE_THRESHOLD,
+          STREAM_REQUEST_CIRCUIT_OPEN_MS);
+  // Installed only where ad segments can be told apart by URL, which is for mock streams.
+  private AdSegmentMemoryCache adSegmentCache;
   private ImageButton playButton;
 
-  private final HashMap<String, Long> bookmarks = new HashMap<>();
+  private BookmarkStore bookmarkStore;
+  private final Handler bookmarkHandler = new Handler(Looper.getMainLooper());
   private VideoListFragment.VideoListItem videoListItem;
   private boolean contentHasStarted = false;
 
@@ -73,21 +159,83 @@ public class MyActivity extends AppCompatActivity {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_my);
 
-    // Initialize the IMA SDK as early as possible when the app starts. If your app already
-    // overrides Application.onCreate(), call this method inside the onCreate() method.
+    // Initialize the IMA SDK once the first frame is drawn, rather than delaying it. Anything
+    // that uses the SDK before then initializes it first.
     // https://developer.android.com/topic/performance/vitals/launch-time#app-creation
-    ImaSdkFactory.getInstance().initialize(this, getImaSdkSettings());
+    ImaSdkInitializer.scheduleOnIdle(this, startupTracer);
 
     if (CookieHandler.getDefault() != DEFAULT_COOKIE_MANAGER) {
       CookieHandler.setDefault(DEFAULT_COOKIE_MANAGER);
     }
 
+    // Keep one warm player alive across video selections and stream switches.
+    playerPool = new ExoPlayerPool(/* maxIdlePlayers= */ 1);
+    segmentCache = new SegmentCache(this, SEGMENT_CACHE_MAX_BYTES);
+    streamPrefetcher = new StreamPrefetcher(segmentCache);
+    bandwidthEstimateStore = new BandwidthEstimateStore(this);
+    bookmarkStore = new BookmarkStore(this, MAX_BOOKMARKS);
+    if (MOCK_STREAM_SERVER_ENABLED
+        || getIntent().getBooleanExtra(EXTRA_MOCK_STREAM_SERVER, /* defaultValue= */ false)) {
+      startMockStreamServer();
+    }
+
     VideoListFragment videoListFragment = new VideoListFragment();
     getSupportFragmentManager()
         .beginTransaction()
         .add(R.id.video_example_container, videoListFragment, PLAYLIST_FRAGMENT_TAG)
         .commit();
     videoListFragment.setOnVideoSelectedListener(mVideoSelectedListener);
+    videoListFragment.setOnVideoFocusedListener(this::onVideoFocused);
+  }
+
+  // The list reports its first likely item while it is created, before the first frame, so the
+  // prefetch waits for the SDK to be initialized once the main thread is idle. Later reports
+  // replace the item that is waiting.
+  private void onVideoFocused(VideoListFragment.VideoListItem videoItem) {
+    boolean waiting = focusedVideoItem != null;
+    focusedVideoItem = videoItem;
+    if (!waiting) {
+      ImaSdkInitializer.runWhenInitialized(prefetchFocusedVideo);
+    }
+  }
+
+  private void prefetchFocusedVideo() {
+    VideoListFragment.VideoListItem videoItem = focusedVideoItem;
+    focusedVideoItem = null;
+    // Not needed once the user picked a video before initialization.
+    if (videoItem != null && sampleAdsWrapper == null) {
+      streamPrefetcher.prefetch(getRetainedAdsWrapper(), videoItem);
+    }
+  }
+
+  // Returns the wrapper for the next video selection, creating it if needed.
+  private SampleAdsWrapper getRetainedAdsWrapper() {
+    if (retainedAdsWrapper == null) {
+      retainedAdsWrapper = new SampleAdsWrapper(this);
+      // Set at once, so that a mock stream is never prefetched through IMA.
+      retainedAdsWrapper.setMockStreamServer(mockStreamServer);
+    }
+    return retainedAdsWrapper;
+  }
+
+  private void startMockStreamServer() {
+    // The sources are kept in the OBB directory, which clearing the app's data leaves in place, so
+    // that benchmarks can start each iteration from cleared data without downloading them again.
+    MockStitchingServer server =
+        new MockStitchingServer(
+            new File(getObbDir(), "mock_stream"), FALLBACK_STREAM_URL, FALLBACK_STREAM_URL);
+    for (long contentTimeMs : MOCK_AD_BREAK_CONTENT_TIMES_MS) {
+      server.addAdBreak(contentTimeMs);
+    }
+    server.setAdSegmentCount(MOCK_AD_SEGMENT_COUNT);
+    try {
+      server.start();
+      mockStreamServer = server;
+      adSegmentCache =
+          new AdSegmentMemoryCache(AD_SEGMENT_CACHE_MAX_BYTES, server.getAdSegmentPattern());
+    } catch (IOException e) {
+      Log.e(APP_LOG_TAG, "Failed to start the mock stream server", e);
+    }
   }
 
   @Override
@@ -97,6 +245,15 @@ public class MyActivity extends AppCompatActivity {
     return true;
   }
 
+  @Override
+  public boolean onOptionsItemSelected(MenuItem item) {
+    if (item.getItemId() == R.id.action_multiview) {
+      startActivity(new Intent(this, MultiviewActivity.class));
+      return true;
+    }
+    return super.onOptionsItemSelected(item);
+  }
+
   @Override
   public void onConfigurationChanged(Configuration configuration) {
     super.onConfigurationChanged(configuration);
@@ -130,6 +287,9 @@ public class MyActivity extends AppCompatActivity {
     if (videoPlayer != null && videoPlayer.isPlaying()) {
       videoPlayer.pause();
     }
+    // The process may be killed once in the background, so save the estimate now.
+    bandwidthEstimateStore.save();
+    bookmarkStore.flush();
   }
 
   @Override
@@ -140,12 +300,60 @@ public class MyActivity extends AppCompatActivity {
     }
   }
 
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    ImaSdkInitializer.removePendingWork(prefetchFocusedVideo);
+    focusedVideoItem = null;
+    streamPrefetcher.release();
+    playerPool.releaseAll();
+    segmentCache.release();
+    bookmarkHandler.removeCallbacks(bookmarkCheckpoint);
+    bookmarkStore.release();
+    adEventTrace.release();
+    if (retainedAdsWrapper != null) {
+      retainedAdsWrapper.release();
+    }
+    if (mockStreamServer != null) {
+      mockStreamServer.stop();
+    }
+  }
+
+  // Logs the statistics of every component and exports the ad event trace.
+  private void logDiagnostics() {
+    Log.i(APP_LOG_TAG, segmentCache.toString());
+    Log.i(APP_LOG_TAG, loadControl.toString());
+    Log.i(APP_LOG_TAG, bandwidthEstimateStore.toString());
+    Log.i(APP_LOG_TAG, startupTracer.toString());
+    Log.i(APP_LOG_TAG, bookmarkStore.toString());
+    Log.i(APP_LOG_TAG, hotPathProfiler.toString());
+    Log.i(APP_LOG_TAG, sampleAdsWrapper.getCallbackDispatcher().toString());
+    Log.i(APP_LOG_TAG, setupMemoryMeter.toString());
+    Log.i(APP_LOG_TAG, requestSupervisor.toString());
+    adEventTrace.export(new File(getFilesDir(), AD_EVENT_TRACE_FILE_NAME));
+  }
+
   public void hidePlayButton() {
     if (playButton != null) {
       playButton.setVisibility(View.INVISIBLE);
     }
   }
 
+  // Bookmarks the content time while playing, so resume survives the process being killed.
+  private final Runnable bookmarkCheckpoint =
+      new Runnable() {
+        @Override
+        public void run() {
+          // The player is only built once the stream is requested.
+          if (sampleAdsWrapper != null
+              && videoPlayer.isStreamRequested()
+              && videoPlayer.isPlaying()) {
+            bookmarkStore.put(videoListItem.getId(), sampleAdsWrapper.getContentTimeMs());
+          }
+          bookmarkHandler.postDelayed(this, BOOKMARK_INTERVAL_MS);
+        }
+      };
+
   private final VideoListFragment.OnVideoSelectedListener mVideoSelectedListener =
       new VideoListFragment.OnVideoSelectedListener() {
         @Override
@@ -177,11 +385,48 @@ public class MyActivity extends AppCompatActivity {
           playButton = rootView.findViewById(R.id.playButton);
           videoPlayer =
               new SampleVideoPlayer(rootView.getContext(), rootView.findViewById(R.id.videoView));
+          videoPlayer.setPlayerPool(playerPool);
+          videoPlayer.setLoadControl(loadControl);
+          videoPlayer.setBandwidthEstimateStore(bandwidthEstimateStore);
+          // Live playlists change on every reload, so only VOD streams are read through the cache.
+          if (videoListItem.isVod()) {
+            videoPlayer.setSegmentCache(segmentCache);
+          }
+          videoPlayer.setAdSegmentCache(adSegmentCache);
+          videoPlayer.setStartupTracer(startupTracer);
+          videoPlayer.setHotPathProfiler(hotPathProfiler);
+          videoPlayer.setUsePlaybackThread(PLAYBACK_THREAD_ENABLED);
           videoPlayer.enableControls(false);
-          sampleAdsWrapper =
-              new SampleAdsWrapper(
-                  rootView.getContext(), videoPlayer, rootView.findViewById(R.id.adUiContainer));
-          sampleAdsWrapper.setFallbackUrl(FALLBACK_STREAM_URL);
+          ViewGroup adUiContainer = rootView.findViewById(R.id.adUiContainer);
+          boolean reused = retainedAdsWrapperServedSelection;
+          startupTracer.begin(StartupTracer.Stage.CREATE_ADS_LOADER);
+          setupMemoryMeter.begin();
+          sampleAdsWrapper = getRetainedAdsWrapper();
+          sampleAdsWrapper.attach(videoPlayer, adUiContainer, videoListItem);
+          if (ADS_LOADER_REUSE_ENABLED) {
+            retainedAdsWrapperServedSelection = true;
+          } else {
+            retainedAdsWrapper = null;
+          }
+          setupMemoryMeter.end(reused);
+          startupTracer.end(StartupTracer.Stage.CREATE_ADS_LOADER);
+          sampleAdsWrapper.setAdSegmentCache(adSegmentCache);
+          sampleAdsWrapper.setStartupTracer(startupTracer);
+          sampleAdsWrapper.setAdEventTrace(adEventTrace);
+          sampleAdsWrapper.setHotPathProfiler(hotPathProfiler);
+          if (PLAYBACK_THREAD_ENABLED) {
+            sampleAdsWrapper.setBackgroundHandler(BackgroundThread.getHandler());
+          }
+          if (mockStreamServer != null) {
+            sampleAdsWrapper.setMockStreamServer(mockStreamServer);
+            sampleAdsWrapper.setFallbackUrl(mockStreamServer.getStreamUrl());
+          } else {
+            sampleAdsWrapper.setFallbackUrl(FALLBACK_STREAM_URL);
+          }
+          sampleAdsWrapper.setFallbackPrewarmEnabled(FALLBACK_PREWARM_ENABLED);
+          if (STREAM_REQUEST_SUPERVISOR_ENABLED) {
+            sampleAdsWrapper.setRequestSupervisor(requestSupervisor);
+          }
 
           final TextView descTextView = rootView.findViewById(R.id.playerDescription);
           final TextView logTextView = rootView.findViewById(R.id.logText);
@@ -203,13 +448,12 @@ public class MyActivity extends AppCompatActivity {
           forceHeight.constrainHeight(R.id.dummyScrollContent, displayMetrics.heightPixels);
           forceHeight.applyTo(constraintLayout);
 
-          sampleAdsWrapper.setLogger(
-              logMessage -> {
-                Log.i(APP_LOG_TAG, logMessage);
-                if (logTextView != null) {
-                  logTextView.append(logMessage);
-                }
-              });
+          eventLog = new EventLog(APP_LOG_TAG, EVENT_LOG_CAPACITY, EVENT_LOG_VISIBLE_MESSAGES);
+          eventLog.setTextView(logTextView);
+          if (PLAYBACK_THREAD_ENABLED) {
+            eventLog.setLogcatHandler(BackgroundThread.getHandler());
+          }
+          sampleAdsWrapper.setLogger(eventLog);
 
           // Set up play button listener to play video then hide play button.
           playButton.setOnClickListener(
@@ -220,13 +464,20 @@ public class MyActivity extends AppCompatActivity {
                   return;
                 }
                 contentHasStarted = true;
-                long bookMarkTime = 0;
-                if (bookmarks.containsKey(videoListItem.getId())) {
-                  bookMarkTime = bookmarks.get(videoListItem.getId());
-                }
+                startupTracer.begin(StartupTracer.Stage.TAP_TO_FIRST_FRAME);
                 videoPlayer.enableControls(true);
                 videoPlayer.setCanSeek(true);
-                sampleAdsWrapper.requestAndPlayAds(videoListItem, bookMarkTime);
+                SampleVideoPlayer tappedPlayer = videoPlayer;
+                bookmarkStore.get(
+                    videoListItem.getId(),
+                    bookMarkTime -> {
+                      if (videoPlayer != tappedPlayer) {
+                        return; // The video was left before its bookmark was read.
+                      }
+                      // Plays the prefetched stream if it is for this item and ready.
+                      sampleAdsWrapper.requestAndPlayAds(videoListItem, bookMarkTime);
+                      bookmarkHandler.postDelayed(bookmarkCheckpoint, BOOKMARK_INTERVAL_MS);
+                    });
               });
 
           orientVideoDescription(getResources().getConfiguration().orientation);
@@ -234,7 +485,18 @@ public class MyActivity extends AppCompatActivity {
 
         @Override
         public void onVideoFragmentDestroyed() {
-          sampleAdsWrapper.release();
+          if (DIAGNOSTICS_ENABLED) {
+            logDiagnostics();
+          }
+          bookmarkHandler.removeCallbacks(bookmarkCheckpoint);
+          eventLog.setTextView(null);
+          eventLog = null;
+          if (sampleAdsWrapper == retainedAdsWrapper) {
+            // Releases the player but keeps the AdsLoader for the next selection.
+            sampleAdsWrapper.detach();
+          } else {
+            sampleAdsWrapper.release();
+          }
           sampleAdsWrapper = null;
           videoPlayer = null;
         }
@@ -243,7 +505,7 @@ public class MyActivity extends AppCompatActivity {
         public void onVideoFragmentPaused() {
           // Store content time for bookmarking feature.
           if (sampleAdsWrapper != null) {
-            bookmarks.put(videoListItem.getId(), sampleAdsWrapper.getContentTimeMs());
+            bookmarkStore.put(videoListItem.getId(), sampleAdsWrapper.getContentTimeMs());
           }
         }
       };
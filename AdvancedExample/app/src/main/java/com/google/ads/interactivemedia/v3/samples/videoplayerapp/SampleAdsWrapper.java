@@ -17,21 +17,29 @@
 package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
 import com.google.ads.interactivemedia.v3.api.AdErrorEvent;
 import com.google.ads.interactivemedia.v3.api.AdEvent;
 import com.google.ads.interactivemedia.v3.api.AdsLoader;
 import com.google.ads.interactivemedia.v3.api.AdsManagerLoadedEvent;
-import com.google.ads.interactivemedia.v3.api.CuePoint;
 import com.google.ads.interactivemedia.v3.api.ImaSdkFactory;
 import com.google.ads.interactivemedia.v3.api.StreamDisplayContainer;
 import com.google.ads.interactivemedia.v3.api.StreamManager;
 import com.google.ads.interactivemedia.v3.api.StreamRequest;
 import com.google.ads.interactivemedia.v3.api.player.VideoProgressUpdate;
 import com.google.ads.interactivemedia.v3.api.player.VideoStreamPlayer;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.AdSegmentMemoryCache;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.HotPathProfiler;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.MockStitchingServer;
 import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.SampleVideoPlayer;
-import java.util.ArrayList;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.StartupTracer;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.TraceSections;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 
@@ -42,22 +50,61 @@ public class SampleAdsWrapper
   /** Log interface, so we can output the log commands to the UI or similar. */
   public interface Logger {
     void log(String logMessage);
+
+    /** Logs a message with a priority, such as {@link Log#WARN}, to filter messages by. */
+    default void log(int priority, String logMessage) {
+      log(logMessage);
+    }
+  }
+
+  /** Receives the stream URLs of prefetched streams. */
+  public interface PrefetchListener {
+    /** Called when the stream URL of a prefetched stream is known, before it plays. */
+    void onPrefetchedStreamLoaded(VideoListFragment.VideoListItem videoListItem, String url);
   }
 
+  // How often the playhead of a mock stream is checked for entering or leaving an ad break.
+  private static final long MOCK_AD_BREAK_POLL_INTERVAL_MS = 200;
+
   private final ImaSdkFactory sdkFactory;
   private AdsLoader adsLoader;
   private StreamManager streamManager;
-  private final List<VideoStreamPlayer.VideoStreamPlayerCallback> playerCallbacks;
+  private VideoStreamPlayer videoStreamPlayer;
+  private final CallbackDispatcher playerCallbacks = new CallbackDispatcher();
 
   private SampleVideoPlayer videoPlayer;
   private final Context context;
-  private final ViewGroup adUiContainer;
+  // Holds the ad UI. It moves, along with the AdsLoader, to the views of each video selection.
+  private final FrameLayout adUiContainer;
+  private final SampleVideoPlayer.SampleVideoPlayerCallback sampleVideoPlayerCallback;
+  // Identifies the current stream request, as the AdsLoader outlives the requests it serves.
+  private Object requestContext;
+  private VideoListFragment.VideoListItem requestedItem;
+  private StreamRequestSupervisor requestSupervisor;
+  // A stream requested while detached, and its URL once the StreamManager resolves it.
+  private VideoListFragment.VideoListItem prefetchedItem;
+  private String prefetchedStreamUrl;
+  private List<HashMap<String, String>> prefetchedSubtitles;
+  private PrefetchListener prefetchListener;
+
+  private final CuePointIndex cuePoints = new CuePointIndex();
 
   private long bookMarkContentTimeMs; // Bookmarked content time, in milliseconds.
+  private long bookMarkStreamTimeMs; // Bookmarked stream time, in milliseconds.
   private long snapBackTimeMs; // Stream time to snap back to, in milliseconds.
   private boolean adsRequested;
   private String fallbackUrl;
+  private boolean fallbackPrewarmEnabled;
+  private MockStitchingServer mockStreamServer;
+  private boolean inMockAdBreak;
   private Logger logger;
+  private AdSegmentMemoryCache adSegmentCache;
+  private StartupTracer startupTracer;
+  private AdEventTrace adEventTrace;
+  private HotPathProfiler hotPathProfiler;
+  private Handler backgroundHandler;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Runnable mockAdBreakPoller = this::pollMockAdBreak;
 
   /**
    * Creates a new SampleAdsWrapper that implements IMA direct-ad-insertion.
@@ -67,96 +114,353 @@ public class SampleAdsWrapper
    * @param adUiContainer ViewGroup in which to display the ad's UI.
    */
   public SampleAdsWrapper(Context context, SampleVideoPlayer videoPlayer, ViewGroup adUiContainer) {
-    this.videoPlayer = videoPlayer;
+    this(context);
+    attach(videoPlayer, adUiContainer, /* videoListItem= */ null);
+  }
+
+  /**
+   * Creates a new SampleAdsWrapper that is not attached to a player yet. It can prefetch a stream
+   * with {@link #prefetchStream} until {@link #attach} is called.
+   *
+   * @param context the app's context.
+   */
+  public SampleAdsWrapper(Context context) {
     this.context = context;
-    this.adUiContainer = adUiContainer;
+    this.adUiContainer = new FrameLayout(context);
+    ImaSdkInitializer.ensureInitialized(context);
     sdkFactory = ImaSdkFactory.getInstance();
-    playerCallbacks = new ArrayList<>();
+    sampleVideoPlayerCallback = createSampleVideoPlayerCallback();
     createAdsLoader();
   }
 
+  /**
+   * Moves this wrapper to another player and ad UI container, such as those of the next video
+   * selection, keeping its AdsLoader and StreamDisplayContainer. Call {@link #detach} first. A
+   * prefetch for any other item is cancelled, and one for the item is kept until {@link
+   * #requestAndPlayAds}.
+   *
+   * @param videoPlayer underlying HLS video player.
+   * @param adUiContainer ViewGroup in which to display the ad's UI.
+   * @param videoListItem the item the player is for, or null if not known yet.
+   */
+  public void attach(
+      SampleVideoPlayer videoPlayer,
+      ViewGroup adUiContainer,
+      VideoListFragment.VideoListItem videoListItem) {
+    if (videoListItem == null || !isPrefetching(videoListItem)) {
+      cancelPrefetch();
+    }
+    this.videoPlayer = videoPlayer;
+    adUiContainer.addView(
+        this.adUiContainer,
+        new ViewGroup.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    videoPlayer.setSampleVideoPlayerCallback(sampleVideoPlayerCallback);
+  }
+
+  /**
+   * Ends the current stream, releases the player and removes the ad UI from its container, keeping
+   * the AdsLoader for the next {@link #attach}.
+   */
+  public void detach() {
+    if (requestSupervisor != null) {
+      requestSupervisor.cancel();
+    }
+    cancelPrefetch();
+    if (streamManager != null) {
+      streamManager.destroy();
+      streamManager = null;
+    }
+
+    if (videoPlayer != null) {
+      videoPlayer.release();
+      videoPlayer = null;
+    }
+    ViewParent parent = adUiContainer.getParent();
+    if (parent instanceof ViewGroup parentGroup) {
+      parentGroup.removeView(adUiContainer);
+    }
+
+    mainHandler.removeCallbacksAndMessages(null);
+    if (snapBackTimeMs > 0) {
+      TraceSections.endAsync(TraceSections.SNAPBACK);
+    }
+    cuePoints.update(new long[0], new long[0], new boolean[0]);
+    bookMarkContentTimeMs = 0;
+    bookMarkStreamTimeMs = 0;
+    snapBackTimeMs = 0;
+    inMockAdBreak = false;
+    requestContext = null;
+    requestedItem = null;
+    adsRequested = false;
+  }
+
   private void createAdsLoader() {
-    VideoStreamPlayer videoStreamPlayer = createVideoStreamPlayer();
+    videoStreamPlayer = createVideoStreamPlayer();
     StreamDisplayContainer displayContainer =
         ImaSdkFactory.createStreamDisplayContainer(adUiContainer, videoStreamPlayer);
-    videoPlayer.setSampleVideoPlayerCallback(
-        new SampleVideoPlayer.SampleVideoPlayerCallback() {
-          @Override
-          public void onUserTextReceived(String userText) {
-            for (VideoStreamPlayer.VideoStreamPlayerCallback callback : playerCallbacks) {
-              callback.onUserTextReceived(userText);
-            }
-          }
+    adsLoader =
+        sdkFactory.createAdsLoader(context, MyActivity.getImaSdkSettings(), displayContainer);
+    adsLoader.addAdErrorListener(this);
+    adsLoader.addAdsLoadedListener(this);
+  }
 
-          @Override
-          public void onSeek(int windowIndex, long positionMs) {
-            long timeToSeek = positionMs;
-            if (streamManager != null) {
-              CuePoint cuePoint = streamManager.getPreviousCuePointForStreamTimeMs(positionMs);
-              long bookMarkStreamTimeMs =
-                  streamManager.getStreamTimeMsForContentTimeMs(bookMarkContentTimeMs);
-              if (cuePoint != null
-                  && !cuePoint.isPlayed()
-                  && cuePoint.getEndTimeMs() > bookMarkStreamTimeMs) {
-                snapBackTimeMs = timeToSeek; // Update snap back time.
-                // Missed cue point, so snap back to the beginning of cue point.
-                timeToSeek = cuePoint.getStartTimeMs();
-                Log.i("IMA", "SnapBack to " + timeToSeek + " ms.");
-                videoPlayer.seekTo(windowIndex, Math.round(timeToSeek));
-                videoPlayer.setCanSeek(false);
-
-                return;
-              }
-            }
-            videoPlayer.seekTo(windowIndex, Math.round(timeToSeek));
+  private SampleVideoPlayer.SampleVideoPlayerCallback createSampleVideoPlayerCallback() {
+    return new SampleVideoPlayer.SampleVideoPlayerCallback() {
+      @Override
+      public void onUserTextReceived(String userText) {
+        long startNs = beginProfiling(HotPathProfiler.Path.CALLBACK_FAN_OUT);
+        playerCallbacks.onUserTextReceived(userText);
+        endProfiling(HotPathProfiler.Path.CALLBACK_FAN_OUT, startNs);
+      }
+
+      @Override
+      public void onSeek(int windowIndex, long positionMs) {
+        long timeToSeek = positionMs;
+        // Resolved from the local index, so seeking does not call into the StreamManager.
+        long startNs = beginProfiling(HotPathProfiler.Path.SNAPBACK_RESOLUTION);
+        int cuePointIndex = cuePoints.getSnapBackIndex(positionMs, bookMarkStreamTimeMs);
+        endProfiling(HotPathProfiler.Path.SNAPBACK_RESOLUTION, startNs);
+        if (cuePointIndex != CuePointIndex.INDEX_UNSET) {
+          if (snapBackTimeMs == 0) {
+            TraceSections.beginAsync(TraceSections.SNAPBACK);
           }
+          snapBackTimeMs = timeToSeek; // Update snap back time.
+          // Missed cue point, so snap back to the beginning of cue point.
+          timeToSeek = cuePoints.getStartTimeMs(cuePointIndex);
+          Log.i("IMA", "SnapBack to " + timeToSeek + " ms.");
+          videoPlayer.seekTo(windowIndex, Math.round(timeToSeek));
+          videoPlayer.setCanSeek(false);
+
+          return;
+        }
+        videoPlayer.seekTo(windowIndex, Math.round(timeToSeek));
+      }
+
+      @Override
+      public void onContentComplete() {
+        playerCallbacks.onContentComplete();
+      }
+
+      @Override
+      public void onPause() {
+        playerCallbacks.onPause();
+      }
+
+      @Override
+      public void onResume() {
+        playerCallbacks.onResume();
+      }
+
+      @Override
+      public void onVolumeChanged(int percentage) {
+        playerCallbacks.onVolumeChanged(percentage);
+      }
+    };
+  }
+
+  public void requestAndPlayAds(
+      VideoListFragment.VideoListItem videoListItem, long bookMarkTimeMs) {
+
+    bookMarkContentTimeMs = bookMarkTimeMs;
+    // Set the license URL.
+    videoPlayer.setLicenseUrl(videoListItem.getLicenseUrl());
+    if (mockStreamServer != null) {
+      requestedItem = videoListItem;
+      adsRequested = true;
+      requestMockStream();
+      return;
+    }
+    if (isPrefetching(videoListItem)) {
+      adoptPrefetch();
+      return;
+    }
+    cancelPrefetch();
+    if (fallbackPrewarmEnabled && fallbackUrl != null) {
+      // Hedge the stream request, so that a failed request can switch to the fallback at once.
+      videoPlayer.prepareFallback(fallbackUrl);
+    }
+    requestedItem = videoListItem;
+    adsRequested = true;
+    if (requestSupervisor != null) {
+      requestSupervisor.start(requestCallback);
+    } else {
+      requestStream();
+    }
+  }
+
+  private void requestStream() {
+    // Drop the StreamManager of an earlier attempt that missed its deadline.
+    if (streamManager != null) {
+      streamManager.destroy();
+      streamManager = null;
+    }
+    if (startupTracer != null) {
+      startupTracer.begin(StartupTracer.Stage.STREAM_REQUEST);
+    }
+    issueStreamRequest();
+  }
+
+  private void issueStreamRequest() {
+    StreamRequest request = buildStreamRequest(sdkFactory, requestedItem);
+    requestContext = new Object();
+    request.setUserRequestContext(requestContext);
+    adsLoader.requestStream(request);
+  }
 
+  // Loads the ad breaks of the mock stream in place of a stream request.
+  private void requestMockStream() {
+    Object mockRequestContext = new Object();
+    requestContext = mockRequestContext;
+    MockStitchingServer server = mockStreamServer;
+    server.loadAdBreaks(
+        new MockStitchingServer.AdBreaksCallback() {
           @Override
-          public void onContentComplete() {
-            for (VideoStreamPlayer.VideoStreamPlayerCallback callback : playerCallbacks) {
-              callback.onContentComplete();
-            }
+          public void onAdBreaksLoaded(MockStitchingServer.AdBreaks adBreaks) {
+            mainHandler.post(
+                () -> {
+                  if (!isStale(mockRequestContext)) {
+                    playMockStream(server.getStreamUrl(), adBreaks);
+                  }
+                });
           }
 
           @Override
-          public void onPause() {
-            for (VideoStreamPlayer.VideoStreamPlayerCallback callback : playerCallbacks) {
-              callback.onPause();
-            }
+          public void onAdBreaksFailed(IOException e) {
+            mainHandler.post(
+                () -> {
+                  if (!isStale(mockRequestContext)) {
+                    log(Log.ERROR, String.format("Error: %s\n", e.getMessage()));
+                    playFallback();
+                  }
+                });
           }
+        });
+  }
 
-          @Override
-          public void onResume() {
-            for (VideoStreamPlayer.VideoStreamPlayerCallback callback : playerCallbacks) {
-              callback.onResume();
-            }
+  // Plays the mock stream, with its ad breaks standing in for the StreamManager's cue points. The
+  // ad break callbacks are driven from the playhead, as IMA would drive them.
+  private void playMockStream(String url, MockStitchingServer.AdBreaks adBreaks) {
+    int adBreakCount = adBreaks.startTimesMs.length;
+    cuePoints.update(
+        adBreaks.startTimesMs.clone(), adBreaks.endTimesMs.clone(), new boolean[adBreakCount]);
+    bookMarkStreamTimeMs = cuePoints.getStreamTimeMs(bookMarkContentTimeMs);
+    updateAdMarkers();
+    videoPlayer.setStreamUrl(url);
+    videoPlayer.play();
+    if (bookMarkContentTimeMs > 0) {
+      videoPlayer.seekTo(bookMarkStreamTimeMs);
+    }
+    inMockAdBreak = false;
+    mainHandler.post(mockAdBreakPoller);
+  }
+
+  private void pollMockAdBreak() {
+    if (videoPlayer == null) {
+      return;
+    }
+    boolean inAdBreak =
+        cuePoints.getContainingIndex(videoPlayer.getCurrentPositionMs())
+            != CuePointIndex.INDEX_UNSET;
+    if (inAdBreak && !inMockAdBreak) {
+      inMockAdBreak = true;
+      videoStreamPlayer.onAdBreakStarted();
+      videoStreamPlayer.onAdPeriodStarted();
+    } else if (!inAdBreak && inMockAdBreak) {
+      inMockAdBreak = false;
+      videoStreamPlayer.onAdPeriodEnded();
+      videoStreamPlayer.onAdBreakEnded();
+    }
+    mainHandler.postDelayed(mockAdBreakPoller, MOCK_AD_BREAK_POLL_INTERVAL_MS);
+  }
+
+  private final StreamRequestSupervisor.Callback requestCallback =
+      new StreamRequestSupervisor.Callback() {
+        @Override
+        public void onRequestAttempt(int attempt) {
+          if (attempt > 0) {
+            log(Log.WARN, "Retrying stream request\n");
           }
+          requestStream();
+        }
 
-          @Override
-          public void onVolumeChanged(int percentage) {
-            for (VideoStreamPlayer.VideoStreamPlayerCallback callback : playerCallbacks) {
-              callback.onVolumeChanged(percentage);
-            }
+        @Override
+        public void onFallback() {
+          // Responses to the abandoned requests are dropped.
+          requestContext = null;
+          if (streamManager != null) {
+            streamManager.destroy();
+            streamManager = null;
           }
-        });
-    adsLoader =
-        sdkFactory.createAdsLoader(context, MyActivity.getImaSdkSettings(), displayContainer);
+          playFallback();
+        }
+      };
+
+  /**
+   * Requests the stream for an item through this wrapper's AdsLoader while it is detached, before
+   * the user picks the item. The StreamManager is initialized and its stream URL kept, and a later
+   * {@link #requestAndPlayAds} for the same item plays it without a new request, once its URL is
+   * known. Any other
+   * prefetch is cancelled. Ignored while attached, and for mock streams.
+   *
+   * @param videoListItem the item to request the stream for.
+   * @param listener listener to hand the stream URL to once it is known.
+   */
+  public void prefetchStream(
+      VideoListFragment.VideoListItem videoListItem, PrefetchListener listener) {
+    if (videoPlayer != null || mockStreamServer != null || isPrefetching(videoListItem)) {
+      return;
+    }
+    cancelPrefetch();
+    prefetchedItem = videoListItem;
+    prefetchListener = listener;
+    requestedItem = videoListItem;
+    issueStreamRequest();
   }
 
-  public void requestAndPlayAds(
-      VideoListFragment.VideoListItem videoListItem, long bookMarkTimeMs) {
+  /** Returns whether the stream for the given item is being or has been prefetched. */
+  public boolean isPrefetching(VideoListFragment.VideoListItem videoListItem) {
+    return prefetchedItem != null && prefetchedItem.getId().equals(videoListItem.getId());
+  }
 
-    bookMarkContentTimeMs = bookMarkTimeMs;
-    adsLoader.addAdErrorListener(this);
-    adsLoader.addAdsLoadedListener(this);
-    adsLoader.requestStream(buildStreamRequest(videoListItem));
-    adsRequested = true;
+  /** Cancels the pending prefetch, if any, and ends its stream session. */
+  public void cancelPrefetch() {
+    if (prefetchedItem == null) {
+      return;
+    }
+    if (streamManager != null) {
+      streamManager.destroy();
+      streamManager = null;
+    }
+    cuePoints.update(new long[0], new long[0], new boolean[0]);
+    requestContext = null;
+    requestedItem = null;
+    clearPrefetch();
   }
 
-  private StreamRequest buildStreamRequest(VideoListFragment.VideoListItem videoListItem) {
-    // Set the license URL.
-    videoPlayer.setLicenseUrl(videoListItem.getLicenseUrl());
+  private void clearPrefetch() {
+    prefetchedItem = null;
+    prefetchedStreamUrl = null;
+    prefetchedSubtitles = null;
+    prefetchListener = null;
+  }
 
+  // Makes the prefetch the stream request of the attached player. Its stream plays at once if its
+  // URL is known, and otherwise once the StreamManager loads it.
+  private void adoptPrefetch() {
+    String url = prefetchedStreamUrl;
+    List<HashMap<String, String>> subtitles = prefetchedSubtitles;
+    clearPrefetch();
+    adsRequested = true;
+    if (url != null) {
+      // CUEPOINTS_CHANGED may have fired before the player was attached.
+      updateAdBreaks();
+      videoStreamPlayer.loadUrl(url, subtitles);
+    }
+  }
+
+  static StreamRequest buildStreamRequest(
+      ImaSdkFactory sdkFactory, VideoListFragment.VideoListItem videoListItem) {
     StreamRequest request;
     // Live stream request.
     if (videoListItem.getAssetKey() != null) {
@@ -183,12 +487,32 @@ public class SampleAdsWrapper
     return new VideoStreamPlayer() {
       @Override
       public void loadUrl(String url, List<HashMap<String, String>> subtitles) {
+        if (prefetchedItem != null) {
+          // Prefetched, so the URL is kept until the item is played, even if a player is
+          // attached meanwhile.
+          prefetchedStreamUrl = url;
+          prefetchedSubtitles = subtitles;
+          if (prefetchListener != null) {
+            prefetchListener.onPrefetchedStreamLoaded(prefetchedItem, url);
+          }
+          return;
+        }
+        if (videoPlayer == null) {
+          return;
+        }
+        if (startupTracer != null) {
+          startupTracer.end(StartupTracer.Stage.STREAM_MANAGER_INIT);
+        }
+        if (requestSupervisor != null) {
+          requestSupervisor.onRequestSucceeded();
+        }
+        videoPlayer.discardFallback();
         videoPlayer.setStreamUrl(url);
         videoPlayer.play();
 
         // Bookmarking
         if (bookMarkContentTimeMs > 0) {
-          long streamTimeMs = streamManager.getStreamTimeMsForContentTimeMs(bookMarkContentTimeMs);
+          long streamTimeMs = getStreamTimeMsForContentTimeMs(bookMarkContentTimeMs);
           videoPlayer.seekTo(streamTimeMs);
         }
       }
@@ -196,13 +520,17 @@ public class SampleAdsWrapper
       @Override
       public void pause() {
         // Pause player.
-        videoPlayer.pause();
+        if (videoPlayer != null) {
+          videoPlayer.pause();
+        }
       }
 
       @Override
       public void resume() {
         // Resume player.
-        videoPlayer.play();
+        if (videoPlayer != null) {
+          videoPlayer.play();
+        }
       }
 
       @Override
@@ -223,16 +551,29 @@ public class SampleAdsWrapper
 
       @Override
       public void onAdBreakStarted() {
+        long startNs = beginProfiling(HotPathProfiler.Path.AD_TRANSITION);
+        TraceSections.beginAsync(TraceSections.AD_BREAK);
         // Disable player controls.
         videoPlayer.setCanSeek(false);
         videoPlayer.enableControls(false);
+        if (adSegmentCache != null) {
+          // The cache is locked by loading threads, so its bookkeeping stays off the main thread.
+          runInBackground(adSegmentCache::onAdBreakStarted);
+        }
         log("Ad Break Started\n");
+        endProfiling(HotPathProfiler.Path.AD_TRANSITION, startNs);
       }
 
       @Override
       public void onAdBreakEnded() {
+        long startNs = beginProfiling(HotPathProfiler.Path.AD_TRANSITION);
         // Re-enable player controls.
         if (videoPlayer != null) {
+          int cuePointIndex = cuePoints.getPreviousIndex(videoPlayer.getCurrentPositionMs());
+          if (cuePointIndex != CuePointIndex.INDEX_UNSET) {
+            cuePoints.markPlayed(cuePointIndex);
+            updateAdMarkers();
+          }
           videoPlayer.setCanSeek(true);
           videoPlayer.enableControls(true);
           if (snapBackTimeMs > 0) {
@@ -240,25 +581,44 @@ public class SampleAdsWrapper
             videoPlayer.seekTo(Math.round(snapBackTimeMs));
           }
         }
+        if (snapBackTimeMs > 0) {
+          TraceSections.endAsync(TraceSections.SNAPBACK);
+        }
         snapBackTimeMs = 0;
+        TraceSections.endAsync(TraceSections.AD_BREAK);
         log("Ad Break Ended\n");
+        if (adSegmentCache != null) {
+          AdSegmentMemoryCache cache = adSegmentCache;
+          runInBackground(
+              () -> {
+                String stats = cache.getAdBreakStats() + "\n";
+                mainHandler.post(() -> log(Log.DEBUG, stats));
+              });
+        }
+        endProfiling(HotPathProfiler.Path.AD_TRANSITION, startNs);
       }
 
       @Override
       public void onAdPeriodStarted() {
+        long startNs = beginProfiling(HotPathProfiler.Path.AD_TRANSITION);
         log("Ad Period Started\n");
+        endProfiling(HotPathProfiler.Path.AD_TRANSITION, startNs);
       }
 
       @Override
       public void onAdPeriodEnded() {
+        long startNs = beginProfiling(HotPathProfiler.Path.AD_TRANSITION);
         log("Ad Period Ended\n");
+        endProfiling(HotPathProfiler.Path.AD_TRANSITION, startNs);
       }
 
       @Override
       public void seek(long timeMs) {
         // An ad was skipped. Skip to the content time.
         log("Seek\n");
-        videoPlayer.seekTo(timeMs);
+        if (videoPlayer != null) {
+          videoPlayer.seekTo(timeMs);
+        }
       }
 
       @Override
@@ -267,13 +627,20 @@ public class SampleAdsWrapper
           return VideoProgressUpdate.VIDEO_TIME_NOT_READY;
         }
 
-        return new VideoProgressUpdate(
-            videoPlayer.getCurrentPositionMs(), videoPlayer.getDuration());
+        long startNs = beginProfiling(HotPathProfiler.Path.CONTENT_PROGRESS);
+        VideoProgressUpdate progress = videoPlayer.getContentProgress();
+        endProfiling(HotPathProfiler.Path.CONTENT_PROGRESS, startNs);
+        return progress;
       }
     };
   }
 
+  // The cue point index maps times locally. Until it has cue points, and for live streams that
+  // never have any, the StreamManager is asked instead.
   public long getContentTimeMs() {
+    if (cuePoints.size() > 0) {
+      return cuePoints.getContentTimeMs(videoPlayer.getCurrentPositionMs());
+    }
     if (streamManager != null) {
       return streamManager.getContentTimeMsForStreamTimeMs(videoPlayer.getCurrentPositionMs());
     }
@@ -281,6 +648,9 @@ public class SampleAdsWrapper
   }
 
   public long getStreamTimeMsForContentTimeMs(long contentTimeMs) {
+    if (cuePoints.size() > 0) {
+      return cuePoints.getStreamTimeMs(contentTimeMs);
+    }
     if (streamManager != null) {
       return streamManager.getStreamTimeMsForContentTimeMs(contentTimeMs);
     }
@@ -298,28 +668,98 @@ public class SampleAdsWrapper
   /** AdErrorListener implementation */
   @Override
   public void onAdError(AdErrorEvent event) {
-    log(String.format("Error: %s\n", event.getError().getMessage()));
-    // play fallback URL.
-    log("Playing fallback Url\n");
-    videoPlayer.setStreamUrl(fallbackUrl);
-    videoPlayer.play();
+    if (isStale(event.getUserRequestContext())) {
+      return;
+    }
+    if (prefetchedItem != null) {
+      Log.d("IMA", "Prefetch failed: " + event.getError().getMessage());
+      cancelPrefetch();
+      return;
+    }
+    log(Log.ERROR, String.format("Error: %s\n", event.getError().getMessage()));
+    if (requestSupervisor != null && requestSupervisor.isActive()) {
+      // The supervisor retries, or plays the fallback once the retries run out.
+      requestSupervisor.onRequestFailed();
+      return;
+    }
+    playFallback();
+  }
+
+  private void playFallback() {
+    log(Log.WARN, "Playing fallback Url\n");
+    videoPlayer.failOver(fallbackUrl);
   }
 
   /** AdEventListener implementation */
   @Override
   public void onAdEvent(AdEvent event) {
+    if (adEventTrace != null && videoPlayer != null && prefetchedItem == null) {
+      long streamTimeMs = videoPlayer.getCurrentPositionMs();
+      adEventTrace.record(
+          event.getType(),
+          event.getAd(),
+          streamTimeMs,
+          cuePoints.getContainingIndex(streamTimeMs));
+    }
     switch (event.getType()) {
       case AD_PROGRESS:
         break; // Do nothing
+      case CUEPOINTS_CHANGED:
+        log(String.format("Event: %s\n", event.getType()));
+        updateAdBreaks();
+        break;
       default:
         log(String.format("Event: %s\n", event.getType()));
         break;
     }
   }
 
+  // Rebuilds the cue point index and hands the ad breaks to the player, so that it can buffer
+  // ahead of them and show them on the seek bar.
+  private void updateAdBreaks() {
+    cuePoints.update(streamManager.getCuePoints());
+    bookMarkStreamTimeMs = cuePoints.getStreamTimeMs(bookMarkContentTimeMs);
+    // Cross-check the local mapping against the StreamManager once per cue point change.
+    long sdkBookMarkStreamTimeMs =
+        streamManager.getStreamTimeMsForContentTimeMs(bookMarkContentTimeMs);
+    if (bookMarkStreamTimeMs != sdkBookMarkStreamTimeMs) {
+      Log.w(
+          "IMA",
+          "Local stream time "
+              + bookMarkStreamTimeMs
+              + " ms differs from StreamManager's "
+              + sdkBookMarkStreamTimeMs
+              + " ms, using StreamManager's.");
+      bookMarkStreamTimeMs = sdkBookMarkStreamTimeMs;
+    }
+    if (videoPlayer != null) {
+      updateAdMarkers();
+    }
+  }
+
+  // Whether an event belongs to a stream request made before the last detach(), or to a cancelled
+  // prefetch.
+  private boolean isStale(Object eventRequestContext) {
+    return (videoPlayer == null && prefetchedItem == null)
+        || (eventRequestContext != null && eventRequestContext != requestContext);
+  }
+
+  private void updateAdMarkers() {
+    videoPlayer.setAdBreaks(
+        cuePoints.getStartTimesMs(), cuePoints.getEndTimesMs(), cuePoints.getPlayed());
+  }
+
   /** AdsLoadedListener implementation */
   @Override
   public void onAdsManagerLoaded(AdsManagerLoadedEvent event) {
+    if (isStale(event.getUserRequestContext())) {
+      event.getStreamManager().destroy();
+      return;
+    }
+    if (startupTracer != null && prefetchedItem == null) {
+      startupTracer.end(StartupTracer.Stage.STREAM_REQUEST);
+      startupTracer.begin(StartupTracer.Stage.STREAM_MANAGER_INIT);
+    }
     streamManager = event.getStreamManager();
     streamManager.addAdErrorListener(this);
     streamManager.addAdEventListener(this);
@@ -331,30 +771,104 @@ public class SampleAdsWrapper
     fallbackUrl = url;
   }
 
+  /**
+   * Sets whether the fallback stream is prepared while each stream request is in flight, at the
+   * cost of a second player, so that a failed request switches to it without waiting for it to
+   * load. Optional, off by default.
+   */
+  public void setFallbackPrewarmEnabled(boolean fallbackPrewarmEnabled) {
+    this.fallbackPrewarmEnabled = fallbackPrewarmEnabled;
+  }
+
+  /**
+   * Sets the supervisor that gives stream requests a deadline, retries them and sends sessions
+   * to the fallback while requests keep failing. Optional, without it requests have no deadline
+   * and the first error plays the fallback.
+   */
+  public void setRequestSupervisor(StreamRequestSupervisor requestSupervisor) {
+    this.requestSupervisor = requestSupervisor;
+  }
+
+  /**
+   * Sets a local mock stitching server to play streams from in place of IMA, for repeatable
+   * playback measurements. No stream requests are made: the server's ad breaks become the cue
+   * points, and the ad break and ad period callbacks are driven from the playhead. The IMA ad UI
+   * is not shown. Optional.
+   */
+  public void setMockStreamServer(MockStitchingServer mockStreamServer) {
+    this.mockStreamServer = mockStreamServer;
+  }
+
+  /** Sets the ad segment cache to report per ad break statistics for. Optional. */
+  public void setAdSegmentCache(AdSegmentMemoryCache adSegmentCache) {
+    this.adSegmentCache = adSegmentCache;
+  }
+
+  /** Sets the tracer to report stream request and StreamManager startup stages to. Optional. */
+  public void setStartupTracer(StartupTracer startupTracer) {
+    this.startupTracer = startupTracer;
+  }
+
+  /** Sets the trace to record every ad event to, including AD_PROGRESS. Optional. */
+  public void setAdEventTrace(AdEventTrace adEventTrace) {
+    this.adEventTrace = adEventTrace;
+  }
+
+  /** Sets the profiler to time progress polls, snapback and callback fan-out with. Optional. */
+  public void setHotPathProfiler(HotPathProfiler hotPathProfiler) {
+    this.hotPathProfiler = hotPathProfiler;
+  }
+
+  /**
+   * Sets a handler to run work that does not touch views on, such as ad segment cache bookkeeping.
+   * Results shown on screen are posted back to the main thread. Optional, without it such work
+   * runs on the main thread.
+   */
+  public void setBackgroundHandler(Handler backgroundHandler) {
+    this.backgroundHandler = backgroundHandler;
+  }
+
+  /** Returns the dispatcher that forwards player events to IMA, for its latency statistics. */
+  public CallbackDispatcher getCallbackDispatcher() {
+    return playerCallbacks;
+  }
+
   /** Sets logger for displaying events to screen. Optional. */
   public void setLogger(Logger logger) {
     this.logger = logger;
   }
 
-  private void log(String message) {
-    if (logger != null) {
-      logger.log(message);
+  private long beginProfiling(HotPathProfiler.Path path) {
+    return hotPathProfiler != null ? hotPathProfiler.begin(path) : HotPathProfiler.NOT_SAMPLED;
+  }
+
+  private void endProfiling(HotPathProfiler.Path path, long startNs) {
+    if (hotPathProfiler != null) {
+      hotPathProfiler.end(path, startNs);
     }
   }
 
-  public void release() {
-    if (streamManager != null) {
-      streamManager.destroy();
-      streamManager = null;
+  private void runInBackground(Runnable work) {
+    if (backgroundHandler != null) {
+      backgroundHandler.post(work);
+    } else {
+      work.run();
     }
+  }
 
-    if (videoPlayer != null) {
-      videoPlayer.release();
-      videoPlayer = null;
+  private void log(String message) {
+    log(Log.INFO, message);
+  }
+
+  private void log(int priority, String message) {
+    if (logger != null) {
+      logger.log(priority, message);
     }
+  }
 
+  public void release() {
+    detach();
     adsLoader.release();
-
-    adsRequested = false;
+    playerCallbacks.clear();
   }
 }
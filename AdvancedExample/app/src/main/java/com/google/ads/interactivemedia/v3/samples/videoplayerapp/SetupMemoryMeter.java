@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.Debug;
+import java.util.Locale;
+
+/**
+ * Measures the memory allocated while each video selection is set up, split between selections
+ * that create a new AdsLoader and those that reuse one. Java allocations are read from the
+ * runtime's count of bytes ever allocated, so garbage collection in between does not hide them.
+ * Native allocations, such as the IMA WebView's, are measured as growth of the native heap.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class SetupMemoryMeter {
+
+  private static final String BYTES_ALLOCATED_STAT = "art.gc.bytes-allocated";
+
+  private long startJavaBytes;
+  private long startNativeBytes;
+  private final int[] setupCounts = new int[2];
+  private final long[] javaBytes = new long[2];
+  private final long[] nativeBytes = new long[2];
+
+  /** Marks the start of a selection's setup. */
+  public void begin() {
+    startJavaBytes = getJavaBytesAllocated();
+    startNativeBytes = Debug.getNativeHeapAllocatedSize();
+  }
+
+  /**
+   * Marks the end of a selection's setup.
+   *
+   * @param reused whether the setup reused an existing AdsLoader.
+   */
+  public void end(boolean reused) {
+    int index = reused ? 1 : 0;
+    setupCounts[index]++;
+    javaBytes[index] += getJavaBytesAllocated() - startJavaBytes;
+    nativeBytes[index] += Debug.getNativeHeapAllocatedSize() - startNativeBytes;
+  }
+
+  /** Returns the mean allocations per setup, for new and reused AdsLoaders. */
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "Selection setup memory: new AdsLoader %s, reused AdsLoader %s",
+        format(0),
+        format(1));
+  }
+
+  private String format(int index) {
+    if (setupCounts[index] == 0) {
+      return "(none)";
+    }
+    return String.format(
+        Locale.US,
+        "(%d setups, %d KB Java, %d KB native per setup)",
+        setupCounts[index],
+        javaBytes[index] / setupCounts[index] / 1024,
+        nativeBytes[index] / setupCounts[index] / 1024);
+  }
+
+  private static long getJavaBytesAllocated() {
+    String value = Debug.getRuntimeStat(BYTES_ALLOCATED_STAT);
+    try {
+      return value != null ? Long.parseLong(value) : 0;
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
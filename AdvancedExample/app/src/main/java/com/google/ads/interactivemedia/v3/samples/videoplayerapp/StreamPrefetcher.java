@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.ads.interactivemedia.v3.samples.samplevideoplayer.SegmentCache;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Requests the stream for the playlist item the user is most likely to pick next, before they tap
+ * play. The request goes through the AdsLoader of the {@link SampleAdsWrapper} that will play the
+ * item, so the stream request, StreamManager initialization and manifest download overlap with the
+ * time the user spends in the playlist, and no second AdsLoader is created for it. The wrapper
+ * plays the ready stream when the item is picked.
+ */
+public class StreamPrefetcher implements SampleAdsWrapper.PrefetchListener {
+
+  private static final String LOG_TAG = "StreamPrefetcher";
+
+  // Stream sessions and live manifests go stale, so unused prefetches are dropped.
+  private static final long DEFAULT_TTL_MS = 60_000;
+
+  @Nullable private final SegmentCache segmentCache;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final long ttlMs;
+
+  @Nullable private SampleAdsWrapper adsWrapper;
+
+  /**
+   * Creates a new StreamPrefetcher.
+   *
+   * @param segmentCache cache to download VOD manifests into, or null to only request the stream.
+   */
+  public StreamPrefetcher(@Nullable SegmentCache segmentCache) {
+    this(segmentCache, DEFAULT_TTL_MS);
+  }
+
+  public StreamPrefetcher(@Nullable SegmentCache segmentCache, long ttlMs) {
+    this.segmentCache = segmentCache;
+    this.ttlMs = ttlMs;
+  }
+
+  /**
+   * Starts requesting the stream for the given item through the given detached wrapper, cancelling
+   * any other prefetch.
+   */
+  public void prefetch(SampleAdsWrapper adsWrapper, VideoListFragment.VideoListItem videoListItem) {
+    if (this.adsWrapper == adsWrapper && adsWrapper.isPrefetching(videoListItem)) {
+      return;
+    }
+    cancel();
+    this.adsWrapper = adsWrapper;
+    adsWrapper.prefetchStream(videoListItem, this);
+    handler.postDelayed(this::cancel, ttlMs);
+    Log.d(LOG_TAG, "Prefetching " + videoListItem.getTitle());
+  }
+
+  /**
+   * Cancels the pending prefetch, if any, and ends its stream session. A prefetch the wrapper has
+   * started playing is not affected.
+   */
+  public void cancel() {
+    handler.removeCallbacksAndMessages(null);
+    if (adsWrapper != null) {
+      adsWrapper.cancelPrefetch();
+      adsWrapper = null;
+    }
+  }
+
+  /**
+   * Cancels the pending prefetch and drops manifest downloads that have not started. A download in
+   * progress is stopped by releasing the SegmentCache.
+   */
+  public void release() {
+    cancel();
+    executor.shutdownNow();
+  }
+
+  /** PrefetchListener implementation */
+  @Override
+  public void onPrefetchedStreamLoaded(VideoListFragment.VideoListItem videoListItem, String url) {
+    // Live manifests change on every reload and are not cached, so only VOD manifests are
+    // downloaded ahead of time.
+    if (segmentCache != null && videoListItem.isVod()) {
+      executor.execute(() -> segmentCache.prefetch(url));
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Supervises the stream request of each playback session. Every attempt has a deadline, failed
+ * and timed out attempts are retried after a jittered exponential backoff, and a session plays the
+ * fallback stream once its attempts run out.
+ *
+ * <p>A circuit breaker spans sessions: after a number of sessions in a row end on the fallback,
+ * new sessions go straight to the fallback for a while, without a request. The next session after
+ * that is let through as a trial, and closes the circuit if it succeeds.
+ *
+ * <p>The supervisor knows nothing of the IMA SDK, so it can be driven by a local stand-in for the
+ * stitcher as well as by {@link SampleAdsWrapper}.
+ *
+ * <p>Must be used on the main thread.
+ */
+public class StreamRequestSupervisor {
+
+  /** Issues stream requests and plays the fallback for a session. */
+  public interface Callback {
+    /**
+     * Issues a stream request. Its result must be reported with {@link #onRequestSucceeded} or
+     * {@link #onRequestFailed}, unless its deadline passes first.
+     *
+     * @param attempt number of the attempt in the session, counting from 0.
+     */
+    void onRequestAttempt(int attempt);
+
+    /** Plays the fallback stream, as every attempt failed or the circuit is open. */
+    void onFallback();
+  }
+
+  /** How a session's stream request ended. */
+  public enum Outcome {
+    /** An attempt succeeded. */
+    SUCCEEDED,
+    /** Every attempt failed, the last one with an error. */
+    FAILED,
+    /** Every attempt failed, the last one by missing its deadline. */
+    TIMED_OUT,
+    /** No request was made, as the circuit was open. */
+    SHORT_CIRCUITED
+  }
+
+  /** Source of elapsed time, in milliseconds. Replaced in tests. */
+  interface Clock {
+    long elapsedRealtime();
+  }
+
+  /** Runs work after a delay on the supervisor's thread. Replaced in tests. */
+  interface Scheduler {
+    void postDelayed(Runnable work, long delayMs);
+
+    void removeCallbacks(Runnable work);
+  }
+
+  private static final int OUTCOME_COUNT = Outcome.values().length;
+
+  private final long deadlineMs;
+  private final int maxRetries;
+  private final long retryDelayMs;
+  private final int failureThreshold;
+  private final long openDurationMs;
+  private final Clock clock;
+  private final Scheduler scheduler;
+  private final Random random;
+  private final Runnable deadlineRunnable = this::onDeadline;
+  private final Runnable retryRunnable = this::startAttempt;
+
+  private final int[] outcomeCounts = new int[OUTCOME_COUNT];
+  private final long[] totalLatencyMs = new long[OUTCOME_COUNT];
+  private final long[] maxLatencyMs = new long[OUTCOME_COUNT];
+  private int retryCount;
+
+  private Callback callback;
+  private long sessionStartMs;
+  private int attempt;
+  private boolean requestInFlight;
+  private int consecutiveFailures;
+  private long openUntilMs;
+
+  /**
+   * Creates a new StreamRequestSupervisor.
+   *
+   * @param deadlineMs time each attempt has to succeed, in milliseconds.
+   * @param maxRetries attempts made after the first before falling back.
+   * @param retryDelayMs mean delay before the first retry, in milliseconds. It doubles on each
+   *     further retry, and each delay is picked at random between half and one and a half times
+   *     the mean, so that sessions failing together do not retry together.
+   * @param failureThreshold sessions in a row ending on the fallback that open the circuit.
+   * @param openDurationMs time the circuit stays open, in milliseconds.
+   */
+  public StreamRequestSupervisor(
+      long deadlineMs,
+      int maxRetries,
+      long retryDelayMs,
+      int failureThreshold,
+      long openDurationMs) {
+    this(
+        deadlineMs,
+        maxRetries,
+        retryDelayMs,
+        failureThreshold,
+        openDurationMs,
+        SystemClock::elapsedRealtime,
+        createMainScheduler(),
+        new Random());
+  }
+
+  /**
+   * Creates a new StreamRequestSupervisor that takes time from a clock and runs deadlines and
+   * retries through a scheduler, such as a fake pair for tests, and picks retry delays with the
+   * given random generator.
+   */
+  StreamRequestSupervisor(
+      long deadlineMs,
+      int maxRetries,
+      long retryDelayMs,
+      int failureThreshold,
+      long openDurationMs,
+      Clock clock,
+      Scheduler scheduler,
+      Random random) {
+    this.clock = clock;
+    this.scheduler = scheduler;
+    this.random = random;
+    this.deadlineMs = deadlineMs;
+    this.maxRetries = maxRetries;
+    this.retryDelayMs = retryDelayMs;
+    this.failureThreshold = failureThreshold;
+    this.openDurationMs = openDurationMs;
+  }
+
+  /**
+   * Starts a session, cancelling any other. Either requests the stream through the callback or,
+   * if the circuit is open, plays the fallback at once.
+   */
+  public void start(Callback callback) {
+    cancel();
+    sessionStartMs = clock.elapsedRealtime();
+    if (isCircuitOpen()) {
+      callback.onFallback();
+      recordOutcome(Outcome.SHORT_CIRCUITED);
+      return;
+    }
+    this.callback = callback;
+    attempt = 0;
+    startAttempt();
+  }
+
+  /** Returns whether a session is waiting on a request or a retry. */
+  public boolean isActive() {
+    return callback != null;
+  }
+
+  /** Returns whether new sessions go straight to the fallback. */
+  public boolean isCircuitOpen() {
+    return clock.elapsedRealtime() < openUntilMs;
+  }
+
+  /**
+   * Reports that a request of the session succeeded, ending the session. A request that missed
+   * its deadline may still succeed while a retry is pending, which cancels the retry.
+   */
+  public void onRequestSucceeded() {
+    if (!isActive()) {
+      return;
+    }
+    cancel();
+    consecutiveFailures = 0;
+    recordOutcome(Outcome.SUCCEEDED);
+  }
+
+  /** Reports that the current attempt failed with an error. */
+  public void onRequestFailed() {
+    if (requestInFlight) {
+      scheduler.removeCallbacks(deadlineRunnable);
+      onAttemptFailed(Outcome.FAILED);
+    }
+  }
+
+  /** Ends the current session without an outcome, such as when the user leaves it. */
+  public void cancel() {
+    scheduler.removeCallbacks(deadlineRunnable);
+    scheduler.removeCallbacks(retryRunnable);
+    callback = null;
+    requestInFlight = false;
+  }
+
+  /** Returns the number of sessions and the mean and max latency of each outcome. */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("Stream requests:");
+    for (Outcome outcome : Outcome.values()) {
+      int index = outcome.ordinal();
+      int count = outcomeCounts[index];
+      builder.append(
+          String.format(
+              Locale.US,
+              " %s %d (mean %d ms, max %d ms),",
+              outcome,
+              count,
+              count == 0 ? 0 : totalLatencyMs[index] / count,
+              maxLatencyMs[index]));
+    }
+    builder.append(String.format(Locale.US, " %d retries", retryCount));
+    if (isCircuitOpen()) {
+      builder.append(", circuit open");
+    }
+    return builder.toString();
+  }
+
+  private static Scheduler createMainScheduler() {
+    Handler handler = new Handler(Looper.getMainLooper());
+    return new Scheduler() {
+      @Override
+      public void postDelayed(Runnable work, long delayMs) {
+        handler.postDelayed(work, delayMs);
+      }
+
+      @Override
+      public void removeCallbacks(Runnable work) {
+        handler.removeCallbacks(work);
+      }
+    };
+  }
+
+  private void startAttempt() {
+    requestInFlight = true;
+    scheduler.postDelayed(deadlineRunnable, deadlineMs);
+    callback.onRequestAttempt(attempt);
+  }
+
+  private void onDeadline() {
+    onAttemptFailed(Outcome.TIMED_OUT);
+  }
+
+  private void onAttemptFailed(Outcome outcome) {
+    requestInFlight = false;
+    if (attempt < maxRetries) {
+      long meanDelayMs = retryDelayMs << attempt;
+      long delayMs = meanDelayMs / 2 + (long) (random.nextDouble() * meanDelayMs);
+      attempt++;
+      retryCount++;
+      scheduler.postDelayed(retryRunnable, delayMs);
+      return;
+    }
+    Callback sessionCallback = callback;
+    callback = null;
+    consecutiveFailures++;
+    if (consecutiveFailures >= failureThreshold) {
+      openUntilMs = clock.elapsedRealtime() + openDurationMs;
+      // One more failure after the circuit closes again reopens it.
+      consecutiveFailures = failureThreshold - 1;
+    }
+    recordOutcome(outcome);
+    sessionCallback.onFallback();
+  }
+
+  private void recordOutcome(Outcome outcome) {
+    int index = outcome.ordinal();
+    long latencyMs = clock.elapsedRealtime() - sessionStartMs;
+    outcomeCounts[index]++;
+    totalLatencyMs[index] += latencyMs;
+    maxLatencyMs[index] = Math.max(maxLatencyMs[index], latencyMs);
+  }
+}
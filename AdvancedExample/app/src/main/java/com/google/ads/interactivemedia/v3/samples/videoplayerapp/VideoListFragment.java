@@ -21,6 +21,7 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
@@ -34,8 +35,12 @@ import com.google.ads.interactivemedia.v3.api.StreamRequest.StreamFormat;
 public class VideoListFragment extends Fragment {
 
   private OnVideoSelectedListener listener;
+  private OnVideoFocusedListener focusedListener;
 
-  public VideoListItem[] getVideoListItems() {
+  // Position of the item the user is most likely to pick next.
+  private int likelyPosition;
+
+  public static VideoListItem[] getVideoListItems() {
     return new VideoListItem[] {
       new VideoListItem(
           "Live HLS Video - Big Buck Bunny",
@@ -82,6 +87,10 @@ public class VideoListFragment extends Fragment {
     this.listener = listener;
   }
 
+  public void setOnVideoFocusedListener(OnVideoFocusedListener focusedListener) {
+    this.focusedListener = focusedListener;
+  }
+
   /**
    * Listener called when the user selects a video from the list. Container activity must implement
    * this interface.
@@ -90,6 +99,14 @@ public class VideoListFragment extends Fragment {
     void onVideoSelected(VideoListItem videoListItem);
   }
 
+  /**
+   * Listener called with the video the user is most likely to select next: the focused item, or
+   * the item after the last one played. Optional.
+   */
+  public interface OnVideoFocusedListener {
+    void onVideoFocused(VideoListItem videoListItem);
+  }
+
   /**
    * Information about a video playlist item that the user will select in a playlist. Has info for
    * both VOD and live stream items.
@@ -182,13 +199,34 @@ public class VideoListFragment extends Fragment {
         (parent, view, position, id) -> {
           VideoListItem item = (VideoListItem) listView.getItemAtPosition(position);
           if (listener != null && item != null) {
+            // The next item in the playlist is the likely pick once the user comes back.
+            likelyPosition = Math.min(position + 1, parent.getCount() - 1);
             listener.onVideoSelected(item);
           }
         });
 
+    listView.setOnItemSelectedListener(
+        new AdapterView.OnItemSelectedListener() {
+          @Override
+          public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+            reportLikelyItem((VideoListItem) parent.getItemAtPosition(position));
+          }
+
+          @Override
+          public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
+    reportLikelyItem(videoListAdapter.getItem(likelyPosition));
+
     return rootView;
   }
 
+  private void reportLikelyItem(VideoListItem item) {
+    if (focusedListener != null && item != null) {
+      focusedListener.onVideoFocused(item);
+    }
+  }
+
   /** Adapter for a list of video items. */
   public static class VideoListAdapter extends ArrayAdapter<VideoListItem> {
 
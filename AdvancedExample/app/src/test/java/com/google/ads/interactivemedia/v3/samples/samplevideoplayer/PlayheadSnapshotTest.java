@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.samplevideoplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.ads.interactivemedia.v3.api.player.VideoProgressUpdate;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+/** Tests for {@link PlayheadSnapshot}. */
+public class PlayheadSnapshotTest {
+
+  private static final int POLL_COUNT = 100_000;
+  // Far below one VideoProgressUpdate per poll, leaving room for the allocation counter itself.
+  private static final long MAX_ALLOCATED_BYTES = 4096;
+
+  @Test
+  public void getProgress_unchangedPlayhead_returnsSameUpdate() {
+    PlayheadSnapshot snapshot = new PlayheadSnapshot();
+
+    VideoProgressUpdate first = snapshot.getProgress(5_000, 60_000);
+    VideoProgressUpdate second = snapshot.getProgress(5_000, 60_000);
+
+    assertSame(first, second);
+    assertEquals(5_000, first.getCurrentTimeMs());
+    assertEquals(60_000, first.getDurationMs());
+  }
+
+  @Test
+  public void getProgress_movedPlayhead_returnsNewUpdate() {
+    PlayheadSnapshot snapshot = new PlayheadSnapshot();
+
+    VideoProgressUpdate first = snapshot.getProgress(5_000, 60_000);
+    VideoProgressUpdate second = snapshot.getProgress(5_250, 60_000);
+
+    assertNotSame(first, second);
+    assertEquals(5_250, second.getCurrentTimeMs());
+  }
+
+  @Test
+  public void getProgress_unchangedPlayhead_doesNotAllocate() {
+    com.sun.management.ThreadMXBean threadBean = getThreadBean();
+    PlayheadSnapshot snapshot = new PlayheadSnapshot();
+    // Warm up, so that class loading and compilation are not counted.
+    for (int i = 0; i < POLL_COUNT; i++) {
+      snapshot.getProgress(5_000, 60_000);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < POLL_COUNT; i++) {
+      snapshot.getProgress(5_000, 60_000);
+    }
+    long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+    assertTrue(
+        "Allocated " + allocatedBytes + " bytes over " + POLL_COUNT + " polls",
+        allocatedBytes < MAX_ALLOCATED_BYTES);
+  }
+
+  private static com.sun.management.ThreadMXBean getThreadBean() {
+    java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+    assumeTrue(sunThreadBean.isThreadAllocatedMemorySupported());
+    sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+    return sunThreadBean;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ads.interactivemedia.v3.api.player.VideoStreamPlayer.VideoStreamPlayerCallback;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/** Tests for {@link CallbackDispatcher}. */
+public class CallbackDispatcherTest {
+
+  private static final int REGISTERING_THREAD_COUNT = 8;
+  private static final int REGISTRATIONS_PER_THREAD = 20_000;
+  private static final int CALLBACKS_KEPT_PER_THREAD = 4;
+  private static final long TIMEOUT_SECONDS = 30;
+
+  @Test
+  public void dispatch_reachesEveryCallbackOnce() {
+    CallbackDispatcher dispatcher = new CallbackDispatcher();
+    AtomicInteger first = new AtomicInteger();
+    AtomicInteger second = new AtomicInteger();
+    VideoStreamPlayerCallback firstCallback = createCallback(first);
+    dispatcher.add(firstCallback);
+    dispatcher.add(firstCallback);
+    dispatcher.add(createCallback(second));
+
+    dispatcher.onPause();
+
+    assertEquals(1, first.get());
+    assertEquals(1, second.get());
+  }
+
+  @Test
+  public void remove_stopsDispatch() {
+    CallbackDispatcher dispatcher = new CallbackDispatcher();
+    AtomicInteger events = new AtomicInteger();
+    VideoStreamPlayerCallback callback = createCallback(events);
+    dispatcher.add(callback);
+
+    dispatcher.remove(callback);
+    dispatcher.onResume();
+
+    assertEquals(0, events.get());
+  }
+
+  @Test
+  public void addDuringDispatch_appliesFromNextDispatch() {
+    CallbackDispatcher dispatcher = new CallbackDispatcher();
+    AtomicInteger added = new AtomicInteger();
+    VideoStreamPlayerCallback addedCallback = createCallback(added);
+    dispatcher.add(createCallback(() -> dispatcher.add(addedCallback)));
+
+    dispatcher.onPause();
+    assertEquals(0, added.get());
+    dispatcher.onPause();
+    assertEquals(1, added.get());
+  }
+
+  @Test
+  public void removeDuringDispatch_stillReachesOtherCallbacks() {
+    CallbackDispatcher dispatcher = new CallbackDispatcher();
+    AtomicInteger other = new AtomicInteger();
+    VideoStreamPlayerCallback[] selfRemoving = new VideoStreamPlayerCallback[1];
+    selfRemoving[0] = createCallback(() -> dispatcher.remove(selfRemoving[0]));
+    dispatcher.add(selfRemoving[0]);
+    dispatcher.add(createCallback(other));
+
+    dispatcher.onVolumeChanged(50);
+    dispatcher.onVolumeChanged(50);
+
+    assertEquals(2, other.get());
+  }
+
+  @Test
+  public void concurrentRegistration_whileDispatching_keepsEveryRegistration() throws Exception {
+    CallbackDispatcher dispatcher = new CallbackDispatcher();
+    AtomicBoolean registering = new AtomicBoolean(true);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch registered = new CountDownLatch(REGISTERING_THREAD_COUNT);
+    List<AtomicInteger> keptEvents = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+
+    for (int t = 0; t < REGISTERING_THREAD_COUNT; t++) {
+      List<AtomicInteger> threadKeptEvents = new ArrayList<>();
+      for (int i = 0; i < CALLBACKS_KEPT_PER_THREAD; i++) {
+        threadKeptEvents.add(new AtomicInteger());
+      }
+      keptEvents.addAll(threadKeptEvents);
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                  // Churn through short-lived registrations, then keep a few for good.
+                  for (int i = 0; i < REGISTRATIONS_PER_THREAD; i++) {
+                    VideoStreamPlayerCallback callback = createCallback(new AtomicInteger());
+                    dispatcher.add(callback);
+                    dispatcher.remove(callback);
+                  }
+                  for (AtomicInteger events : threadKeptEvents) {
+                    dispatcher.add(createCallback(events));
+                  }
+                } catch (Throwable e) {
+                  failure.compareAndSet(null, e);
+                } finally {
+                  registered.countDown();
+                }
+              }));
+    }
+    // Dispatches throughout, as the playback thread and main thread would.
+    Thread dispatching =
+        new Thread(
+            () -> {
+              try {
+                start.await();
+                while (registering.get()) {
+                  dispatcher.onUserTextReceived("text");
+                  dispatcher.onContentComplete();
+                }
+              } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+              }
+            });
+    threads.add(dispatching);
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    start.countDown();
+    assertTrue(registered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    registering.set(false);
+    dispatching.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+
+    int[] eventsBefore = new int[keptEvents.size()];
+    for (int i = 0; i < keptEvents.size(); i++) {
+      eventsBefore[i] = keptEvents.get(i).get();
+    }
+    dispatcher.onPause();
+    for (int i = 0; i < keptEvents.size(); i++) {
+      assertEquals("Kept callback " + i, eventsBefore[i] + 1, keptEvents.get(i).get());
+    }
+    assertTrue(
+        dispatcher.toString(),
+        dispatcher
+            .toString()
+            .startsWith("Callback dispatch: " + keptEvents.size() + " callbacks"));
+  }
+
+  private static VideoStreamPlayerCallback createCallback(AtomicInteger events) {
+    return createCallback(events::incrementAndGet);
+  }
+
+  // Returns a callback that runs the given action on every event.
+  private static VideoStreamPlayerCallback createCallback(Runnable onEvent) {
+    return (VideoStreamPlayerCallback)
+        Proxy.newProxyInstance(
+            VideoStreamPlayerCallback.class.getClassLoader(),
+            new Class<?>[] {VideoStreamPlayerCallback.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "equals":
+                  return proxy == args[0];
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "toString":
+                  return "VideoStreamPlayerCallback";
+                default:
+                  onEvent.run();
+                  return null;
+              }
+            });
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.ads.interactivemedia.v3.api.CuePoint;
+import com.google.ads.interactivemedia.v3.api.StreamManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Replays randomized sessions of seeks and ad breaks against {@link CuePointIndex}. Each session
+ * has random ad breaks, served by a {@link FakeStreamManager}. Every time mapping is checked
+ * against the StreamManager, and every snapback against a linear scan of the ad breaks.
+ *
+ * <p>The linear scan restates the snapback rule, so this test checks the index's search and its
+ * played bookkeeping rather than the rule itself. It covers only the index: the SampleAdsWrapper
+ * paths that use it, such as the snapback in onSeek, the bookmark seek in loadUrl, the fallback in
+ * onAdError and the resume in onAdBreakEnded, need a SampleVideoPlayer and the IMA SDK, and are
+ * not exercised by any JVM test.
+ *
+ * <p>Failures name the session's seed, which replays it on its own.
+ */
+public class CuePointIndexRandomizedTest {
+
+  private static final long SEED = 20_260_301;
+  private static final int SESSION_COUNT = 2_000;
+  private static final int SEEKS_PER_SESSION = 100;
+  private static final int MAX_AD_BREAKS = 8;
+  private static final long MAX_GAP_MS = 300_000;
+  private static final long MAX_AD_BREAK_DURATION_MS = 90_000;
+
+  @Test
+  public void randomSessions_matchReference() {
+    Random seeds = new Random(SEED);
+    for (int session = 0; session < SESSION_COUNT; session++) {
+      runSession(seeds.nextLong());
+    }
+  }
+
+  private static void runSession(long seed) {
+    Random random = new Random(seed);
+    List<CuePoint> adBreaks = createAdBreaks(random);
+    StreamManager streamManager = FakeStreamManager.create(adBreaks);
+    CuePointIndex cuePoints = new CuePointIndex();
+    cuePoints.update(streamManager.getCuePoints());
+
+    List<CuePoint> sortedAdBreaks = new ArrayList<>(adBreaks);
+    Collections.sort(
+        sortedAdBreaks, (a, b) -> Long.compare(a.getStartTimeMs(), b.getStartTimeMs()));
+    boolean[] played = new boolean[sortedAdBreaks.size()];
+    for (int i = 0; i < played.length; i++) {
+      played[i] = sortedAdBreaks.get(i).isPlayed();
+    }
+    long streamDurationMs =
+        sortedAdBreaks.isEmpty()
+            ? MAX_GAP_MS
+            : sortedAdBreaks.get(sortedAdBreaks.size() - 1).getEndTimeMs() + MAX_GAP_MS;
+
+    // Half of the sessions resume from a bookmark.
+    long bookmarkContentTimeMs =
+        random.nextBoolean() ? 0 : (long) (random.nextDouble() * streamDurationMs);
+    long bookmarkStreamTimeMs = cuePoints.getStreamTimeMs(bookmarkContentTimeMs);
+    assertEquals(
+        "Seed " + seed + ", bookmark " + bookmarkContentTimeMs,
+        streamManager.getStreamTimeMsForContentTimeMs(bookmarkContentTimeMs),
+        bookmarkStreamTimeMs);
+
+    for (int seek = 0; seek < SEEKS_PER_SESSION; seek++) {
+      long seekTimeMs = (long) (random.nextDouble() * streamDurationMs);
+      String message = "Seed " + seed + ", seek " + seek + " to " + seekTimeMs;
+      assertEquals(
+          message,
+          streamManager.getContentTimeMsForStreamTimeMs(seekTimeMs),
+          cuePoints.getContentTimeMs(seekTimeMs));
+      assertEquals(
+          message,
+          streamManager.getStreamTimeMsForContentTimeMs(seekTimeMs),
+          cuePoints.getStreamTimeMs(seekTimeMs));
+
+      int expectedIndex =
+          getSnapBackIndex(sortedAdBreaks, played, seekTimeMs, bookmarkStreamTimeMs);
+      int snapBackIndex = cuePoints.getSnapBackIndex(seekTimeMs, bookmarkStreamTimeMs);
+      assertEquals(message, expectedIndex, snapBackIndex);
+      if (snapBackIndex != CuePointIndex.INDEX_UNSET) {
+        // The missed ad break plays before the seek goes ahead.
+        cuePoints.markPlayed(snapBackIndex);
+        played[snapBackIndex] = true;
+      }
+    }
+  }
+
+  // Non-overlapping ad breaks, in random order, some of which start played.
+  private static List<CuePoint> createAdBreaks(Random random) {
+    int count = random.nextInt(MAX_AD_BREAKS + 1);
+    List<CuePoint> adBreaks = new ArrayList<>();
+    // A preroll in a quarter of the sessions.
+    long startTimeMs = random.nextInt(4) == 0 ? 0 : 1 + (long) (random.nextDouble() * MAX_GAP_MS);
+    for (int i = 0; i < count; i++) {
+      long endTimeMs = startTimeMs + 1 + (long) (random.nextDouble() * MAX_AD_BREAK_DURATION_MS);
+      adBreaks.add(FakeCuePoint.create(startTimeMs, endTimeMs, random.nextInt(4) == 0));
+      startTimeMs = endTimeMs + 1 + (long) (random.nextDouble() * MAX_GAP_MS);
+    }
+    Collections.shuffle(adBreaks, random);
+    return adBreaks;
+  }
+
+  // The last ad break starting at or before the seek, if it is unplayed and ends after the
+  // bookmark, found by a linear scan.
+  private static int getSnapBackIndex(
+      List<CuePoint> sortedAdBreaks, boolean[] played, long seekTimeMs, long bookmarkStreamTimeMs) {
+    int index = CuePointIndex.INDEX_UNSET;
+    for (int i = 0; i < sortedAdBreaks.size(); i++) {
+      if (sortedAdBreaks.get(i).getStartTimeMs() <= seekTimeMs) {
+        index = i;
+      }
+    }
+    if (index == CuePointIndex.INDEX_UNSET
+        || played[index]
+        || sortedAdBreaks.get(index).getEndTimeMs() <= bookmarkStreamTimeMs) {
+      return CuePointIndex.INDEX_UNSET;
+    }
+    return index;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ads.interactivemedia.v3.api.CuePoint;
+import com.google.ads.interactivemedia.v3.api.StreamManager;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link CuePointIndex}, cross-checked against a StreamManager. */
+public class CuePointIndexTest {
+
+  private static final long STREAM_DURATION_MS = 600_000;
+  private static final long STEP_MS = 250;
+
+  private StreamManager streamManager;
+  private CuePointIndex cuePoints;
+
+  @Before
+  public void setUp() {
+    // Out of order, as the StreamManager does not promise any.
+    List<CuePoint> adBreaks =
+        Arrays.asList(
+            FakeCuePoint.create(120_000, 150_000, false),
+            FakeCuePoint.create(0, 30_000, true),
+            FakeCuePoint.create(400_000, 460_000, false));
+    streamManager = FakeStreamManager.create(adBreaks);
+    cuePoints = new CuePointIndex();
+    cuePoints.update(streamManager.getCuePoints());
+  }
+
+  @Test
+  public void update_sortsCuePoints() {
+    assertArrayEquals(new long[] {0, 120_000, 400_000}, cuePoints.getStartTimesMs());
+    assertArrayEquals(new long[] {30_000, 150_000, 460_000}, cuePoints.getEndTimesMs());
+    assertTrue(cuePoints.isPlayed(0));
+    assertFalse(cuePoints.isPlayed(1));
+  }
+
+  @Test
+  public void getContentTimeMs_matchesStreamManager() {
+    for (long streamTimeMs = 0; streamTimeMs <= STREAM_DURATION_MS; streamTimeMs += STEP_MS) {
+      assertEquals(
+          "Stream time " + streamTimeMs,
+          streamManager.getContentTimeMsForStreamTimeMs(streamTimeMs),
+          cuePoints.getContentTimeMs(streamTimeMs));
+    }
+  }
+
+  @Test
+  public void getStreamTimeMs_matchesStreamManager() {
+    for (long contentTimeMs = 0; contentTimeMs <= STREAM_DURATION_MS; contentTimeMs += STEP_MS) {
+      assertEquals(
+          "Content time " + contentTimeMs,
+          streamManager.getStreamTimeMsForContentTimeMs(contentTimeMs),
+          cuePoints.getStreamTimeMs(contentTimeMs));
+    }
+  }
+
+  @Test
+  public void getContentTimeMs_insideAdBreak_returnsBreakContentTime() {
+    assertEquals(90_000, cuePoints.getContentTimeMs(135_000));
+  }
+
+  @Test
+  public void getStreamTimeMs_atAdBreakContentTime_returnsBreakEnd() {
+    assertEquals(150_000, cuePoints.getStreamTimeMs(90_000));
+  }
+
+  @Test
+  public void batchConversions_matchSingleConversions() {
+    long[] streamTimesMs = {0, 29_999, 30_000, 135_000, 399_999, 500_000};
+    long[] contentTimesMs = new long[streamTimesMs.length];
+    long[] roundTripMs = new long[streamTimesMs.length];
+
+    cuePoints.getContentTimesMs(streamTimesMs, contentTimesMs);
+    cuePoints.getStreamTimesMs(contentTimesMs, roundTripMs);
+
+    for (int i = 0; i < streamTimesMs.length; i++) {
+      assertEquals(cuePoints.getContentTimeMs(streamTimesMs[i]), contentTimesMs[i]);
+      assertEquals(cuePoints.getStreamTimeMs(contentTimesMs[i]), roundTripMs[i]);
+    }
+  }
+
+  @Test
+  public void emptyIndex_mapsTimesUnchanged() {
+    CuePointIndex emptyCuePoints = new CuePointIndex();
+
+    assertEquals(12_345, emptyCuePoints.getContentTimeMs(12_345));
+    assertEquals(12_345, emptyCuePoints.getStreamTimeMs(12_345));
+    assertEquals(CuePointIndex.INDEX_UNSET, emptyCuePoints.getPreviousIndex(12_345));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import com.google.ads.interactivemedia.v3.api.CuePoint;
+import java.lang.reflect.Proxy;
+
+/** Creates CuePoints for JVM tests, which run without the IMA SDK's implementation. */
+final class FakeCuePoint {
+
+  /** Returns a cue point for an ad break between the given stream times. */
+  static CuePoint create(long startTimeMs, long endTimeMs, boolean played) {
+    return (CuePoint)
+        Proxy.newProxyInstance(
+            CuePoint.class.getClassLoader(),
+            new Class<?>[] {CuePoint.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "getStartTimeMs":
+                  return startTimeMs;
+                case "getEndTimeMs":
+                  return endTimeMs;
+                case "getStartTime":
+                  return startTimeMs / 1000d;
+                case "getEndTime":
+                  return endTimeMs / 1000d;
+                case "isPlayed":
+                  return played;
+                case "equals":
+                  return proxy == args[0];
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "toString":
+                  return "CuePoint[" + startTimeMs + ", " + endTimeMs + "]";
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private FakeCuePoint() {}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import com.google.ads.interactivemedia.v3.api.CuePoint;
+import com.google.ads.interactivemedia.v3.api.StreamManager;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates StreamManagers for JVM tests, serving a fixed list of VOD cue points. Stream and content
+ * times are mapped by walking every cue point, as a reference for {@link CuePointIndex}.
+ */
+final class FakeStreamManager {
+
+  /** Returns a StreamManager for a stream with the given ad breaks, in any order. */
+  static StreamManager create(List<CuePoint> cuePoints) {
+    List<CuePoint> sortedCuePoints = new ArrayList<>(cuePoints);
+    Collections.sort(
+        sortedCuePoints, (a, b) -> Long.compare(a.getStartTimeMs(), b.getStartTimeMs()));
+    return (StreamManager)
+        Proxy.newProxyInstance(
+            StreamManager.class.getClassLoader(),
+            new Class<?>[] {StreamManager.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "getCuePoints":
+                  return cuePoints;
+                case "getContentTimeMsForStreamTimeMs":
+                  return getContentTimeMs(sortedCuePoints, (long) args[0]);
+                case "getStreamTimeMsForContentTimeMs":
+                  return getStreamTimeMs(sortedCuePoints, (long) args[0]);
+                case "init":
+                case "destroy":
+                case "addAdEventListener":
+                case "removeAdEventListener":
+                case "addAdErrorListener":
+                case "removeAdErrorListener":
+                  return null;
+                case "equals":
+                  return proxy == args[0];
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "toString":
+                  return "StreamManager" + cuePoints;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  // Content time stands still during ad breaks.
+  private static long getContentTimeMs(List<CuePoint> sortedCuePoints, long streamTimeMs) {
+    long contentTimeMs = streamTimeMs;
+    for (CuePoint cuePoint : sortedCuePoints) {
+      if (streamTimeMs >= cuePoint.getEndTimeMs()) {
+        contentTimeMs -= cuePoint.getEndTimeMs() - cuePoint.getStartTimeMs();
+      } else if (streamTimeMs >= cuePoint.getStartTimeMs()) {
+        contentTimeMs -= streamTimeMs - cuePoint.getStartTimeMs();
+      }
+    }
+    return contentTimeMs;
+  }
+
+  // Every ad break that plays at or before the content time is added, so a content time at which
+  // a break plays maps to the end of the break.
+  private static long getStreamTimeMs(List<CuePoint> sortedCuePoints, long contentTimeMs) {
+    long streamTimeMs = contentTimeMs;
+    for (CuePoint cuePoint : sortedCuePoints) {
+      if (cuePoint.getStartTimeMs() <= streamTimeMs) {
+        streamTimeMs += cuePoint.getEndTimeMs() - cuePoint.getStartTimeMs();
+      }
+    }
+    return streamTimeMs;
+  }
+
+  private FakeStreamManager() {}
+}
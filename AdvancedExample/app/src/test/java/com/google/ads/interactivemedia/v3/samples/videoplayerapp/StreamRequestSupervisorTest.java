@@ -0,0 +1,307 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.videoplayerapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link StreamRequestSupervisor}, driven by a fake clock. */
+public class StreamRequestSupervisorTest {
+
+  private static final long DEADLINE_MS = 8000;
+  private static final int MAX_RETRIES = 2;
+  private static final long RETRY_DELAY_MS = 500;
+  private static final int FAILURE_THRESHOLD = 2;
+  private static final long OPEN_DURATION_MS = 60_000;
+
+  private FakeTimer timer;
+  private RecordingCallback callback;
+  private StreamRequestSupervisor supervisor;
+
+  @Before
+  public void setUp() {
+    timer = new FakeTimer();
+    callback = new RecordingCallback(timer);
+    // Picks the middle of each jitter range, so that every retry delay is the mean.
+    supervisor = createSupervisor(new FixedRandom(0.5));
+  }
+
+  @Test
+  public void success_beforeDeadline_endsSession() {
+    supervisor.start(callback);
+    timer.advance(DEADLINE_MS - 1);
+    supervisor.onRequestSucceeded();
+    timer.advance(10 * DEADLINE_MS);
+
+    assertEquals(Arrays.asList(0L), callback.attemptTimesMs);
+    assertEquals(0, callback.fallbackCount);
+    assertFalse(supervisor.isActive());
+  }
+
+  @Test
+  public void deadline_retriesAfterBackoff() {
+    supervisor.start(callback);
+
+    timer.advance(DEADLINE_MS - 1);
+    assertEquals(1, callback.attemptTimesMs.size());
+    timer.advance(1 + RETRY_DELAY_MS);
+
+    assertEquals(Arrays.asList(0L, DEADLINE_MS + RETRY_DELAY_MS), callback.attemptTimesMs);
+    assertTrue(supervisor.isActive());
+  }
+
+  @Test
+  public void failures_backOffExponentially_thenFallBack() {
+    supervisor.start(callback);
+    supervisor.onRequestFailed();
+    timer.advance(RETRY_DELAY_MS);
+    supervisor.onRequestFailed();
+    timer.advance(2 * RETRY_DELAY_MS);
+    supervisor.onRequestFailed();
+    timer.advance(10 * DEADLINE_MS);
+
+    assertEquals(Arrays.asList(0L, RETRY_DELAY_MS, 3 * RETRY_DELAY_MS), callback.attemptTimesMs);
+    assertEquals(1, callback.fallbackCount);
+    assertFalse(supervisor.isActive());
+  }
+
+  @Test
+  public void retryDelays_stayWithinJitterRange() {
+    supervisor = createSupervisor(new Random(/* seed= */ 1));
+    for (int session = 0; session < 100; session++) {
+      callback = new RecordingCallback(timer);
+      supervisor.start(callback);
+      supervisor.onRequestFailed();
+      timer.advanceToNextTask();
+      supervisor.onRequestFailed();
+      timer.advanceToNextTask();
+      supervisor.onRequestSucceeded();
+
+      long firstDelayMs = callback.attemptTimesMs.get(1) - callback.attemptTimesMs.get(0);
+      long secondDelayMs = callback.attemptTimesMs.get(2) - callback.attemptTimesMs.get(1);
+      assertTrue(firstDelayMs >= RETRY_DELAY_MS / 2 && firstDelayMs <= RETRY_DELAY_MS * 3 / 2);
+      assertTrue(secondDelayMs >= RETRY_DELAY_MS && secondDelayMs <= RETRY_DELAY_MS * 3);
+    }
+  }
+
+  @Test
+  public void lateSuccess_whileRetryPending_cancelsRetry() {
+    supervisor.start(callback);
+    timer.advance(DEADLINE_MS);
+    supervisor.onRequestSucceeded();
+    timer.advance(10 * DEADLINE_MS);
+
+    assertEquals(1, callback.attemptTimesMs.size());
+    assertEquals(0, callback.fallbackCount);
+  }
+
+  @Test
+  public void cancel_stopsRetries() {
+    supervisor.start(callback);
+    supervisor.onRequestFailed();
+    supervisor.cancel();
+    timer.advance(10 * DEADLINE_MS);
+
+    assertEquals(1, callback.attemptTimesMs.size());
+    assertEquals(0, callback.fallbackCount);
+  }
+
+  @Test
+  public void circuit_opensAfterThreshold_andShortCircuits() {
+    failSessions(FAILURE_THRESHOLD);
+    assertTrue(supervisor.isCircuitOpen());
+
+    RecordingCallback shortCircuited = new RecordingCallback(timer);
+    supervisor.start(shortCircuited);
+
+    assertTrue(shortCircuited.attemptTimesMs.isEmpty());
+    assertEquals(1, shortCircuited.fallbackCount);
+    assertFalse(supervisor.isActive());
+  }
+
+  @Test
+  public void circuit_letsTrialThroughAfterOpenDuration() {
+    failSessions(FAILURE_THRESHOLD);
+    timer.advance(OPEN_DURATION_MS);
+    assertFalse(supervisor.isCircuitOpen());
+
+    RecordingCallback trial = new RecordingCallback(timer);
+    supervisor.start(trial);
+
+    assertEquals(1, trial.attemptTimesMs.size());
+    assertEquals(0, trial.fallbackCount);
+  }
+
+  @Test
+  public void circuit_failedTrial_reopensAtOnce() {
+    failSessions(FAILURE_THRESHOLD);
+    timer.advance(OPEN_DURATION_MS);
+
+    failSessions(1);
+
+    assertTrue(supervisor.isCircuitOpen());
+  }
+
+  @Test
+  public void circuit_successfulTrial_closesCircuit() {
+    failSessions(FAILURE_THRESHOLD);
+    timer.advance(OPEN_DURATION_MS);
+    supervisor.start(callback);
+    supervisor.onRequestSucceeded();
+
+    failSessions(FAILURE_THRESHOLD - 1);
+
+    assertFalse(supervisor.isCircuitOpen());
+  }
+
+  private StreamRequestSupervisor createSupervisor(Random random) {
+    return new StreamRequestSupervisor(
+        DEADLINE_MS,
+        MAX_RETRIES,
+        RETRY_DELAY_MS,
+        FAILURE_THRESHOLD,
+        OPEN_DURATION_MS,
+        timer,
+        timer,
+        random);
+  }
+
+  // Runs sessions in which every attempt fails, until each plays the fallback.
+  private void failSessions(int count) {
+    for (int i = 0; i < count; i++) {
+      RecordingCallback session = new RecordingCallback(timer);
+      supervisor.start(session);
+      while (session.fallbackCount == 0) {
+        supervisor.onRequestFailed();
+        timer.advanceToNextTask();
+      }
+    }
+  }
+
+  /** A clock and scheduler whose time only moves when told to. */
+  private static final class FakeTimer
+      implements StreamRequestSupervisor.Clock, StreamRequestSupervisor.Scheduler {
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Long> taskTimesMs = new ArrayList<>();
+    private long nowMs = 1000;
+
+    @Override
+    public long elapsedRealtime() {
+      return nowMs;
+    }
+
+    @Override
+    public void postDelayed(Runnable work, long delayMs) {
+      tasks.add(work);
+      taskTimesMs.add(nowMs + delayMs);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable work) {
+      for (int i = tasks.size() - 1; i >= 0; i--) {
+        if (tasks.get(i) == work) {
+          tasks.remove(i);
+          taskTimesMs.remove(i);
+        }
+      }
+    }
+
+    /** Moves time forward, running every task that falls due in order. */
+    void advance(long durationMs) {
+      long endMs = nowMs + durationMs;
+      int next;
+      while ((next = getNextTask()) >= 0 && taskTimesMs.get(next) <= endMs) {
+        runTask(next);
+      }
+      nowMs = endMs;
+    }
+
+    /** Moves time forward to the next task and runs it, if there is one. */
+    void advanceToNextTask() {
+      int next = getNextTask();
+      if (next >= 0) {
+        runTask(next);
+      }
+    }
+
+    private int getNextTask() {
+      int next = -1;
+      for (int i = 0; i < tasks.size(); i++) {
+        if (next < 0 || taskTimesMs.get(i) < taskTimesMs.get(next)) {
+          next = i;
+        }
+      }
+      return next;
+    }
+
+    private void runTask(int index) {
+      nowMs = taskTimesMs.remove(index);
+      tasks.remove(index).run();
+    }
+  }
+
+  /** Records the time of each attempt, relative to the first, and counts fallbacks. */
+  private static final class RecordingCallback implements StreamRequestSupervisor.Callback {
+
+    private final FakeTimer timer;
+    private final List<Long> attemptTimesMs = new ArrayList<>();
+    private long startMs = -1;
+    private int fallbackCount;
+
+    RecordingCallback(FakeTimer timer) {
+      this.timer = timer;
+    }
+
+    @Override
+    public void onRequestAttempt(int attempt) {
+      assertEquals(attemptTimesMs.size(), attempt);
+      if (startMs < 0) {
+        startMs = timer.elapsedRealtime();
+      }
+      attemptTimesMs.add(timer.elapsedRealtime() - startMs);
+    }
+
+    @Override
+    public void onFallback() {
+      fallbackCount++;
+    }
+  }
+
+  /** A random generator that always returns the same double. */
+  private static final class FixedRandom extends Random {
+
+    private final double value;
+
+    FixedRandom(double value) {
+      this.value = value;
+    }
+
+    @Override
+    public double nextDouble() {
+      return value;
+    }
+  }
+}
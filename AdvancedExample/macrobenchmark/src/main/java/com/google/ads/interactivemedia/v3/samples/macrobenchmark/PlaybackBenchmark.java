@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import java.util.Collections;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the sample app from the play button tap through an ad break, a snapback seek and the
+ * navigation back to the playlist. Each iteration starts from a killed process with cleared app
+ * data, so that no earlier session's state, such as a prefetched stream, a bookmark, a bandwidth
+ * estimate or cached segments, carries over. The app plays its local mock stream, so that ad
+ * breaks and network conditions repeat across iterations. Only the measure blocks are timed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlaybackBenchmark {
+
+  private static final int ITERATIONS = 5;
+  // Long enough for the first frame after a tap.
+  private static final long FIRST_FRAME_WAIT_MS = 10_000;
+  // Long enough for the stream to load and its preroll to play out.
+  private static final long AD_BREAK_WAIT_MS = 60_000;
+
+  @Rule public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+  @Test
+  public void tapToFirstFrame() {
+    benchmarkRule.measureRepeated(
+        SampleApp.PACKAGE_NAME,
+        Arrays.asList(
+            new TraceSectionMetric(SampleApp.TAP_TO_FIRST_FRAME_SECTION),
+            new TraceSectionMetric(SampleApp.STREAM_REQUEST_SECTION),
+            new FrameTimingMetric()),
+        CompilationMode.DEFAULT,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          SampleApp.startClearedWithMockStream(scope);
+          SampleApp.openVideo(scope.getDevice(), SampleApp.VOD_STREAM_TITLE);
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          SampleApp.tapPlay(scope.getDevice());
+          SampleApp.play(FIRST_FRAME_WAIT_MS);
+          return Unit.INSTANCE;
+        });
+  }
+
+  @Test
+  public void adBreak() {
+    benchmarkRule.measureRepeated(
+        SampleApp.PACKAGE_NAME,
+        Arrays.asList(new TraceSectionMetric(SampleApp.AD_BREAK_SECTION), new FrameTimingMetric()),
+        CompilationMode.DEFAULT,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          SampleApp.startClearedWithMockStream(scope);
+          SampleApp.openVideo(scope.getDevice(), SampleApp.VOD_STREAM_TITLE);
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          // Plays through the preroll, entering and leaving an ad break.
+          SampleApp.tapPlay(scope.getDevice());
+          SampleApp.play(AD_BREAK_WAIT_MS);
+          return Unit.INSTANCE;
+        });
+  }
+
+  @Test
+  public void snapback() {
+    benchmarkRule.measureRepeated(
+        SampleApp.PACKAGE_NAME,
+        Arrays.asList(new TraceSectionMetric(SampleApp.SNAPBACK_SECTION), new FrameTimingMetric()),
+        CompilationMode.DEFAULT,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          SampleApp.startClearedWithMockStream(scope);
+          SampleApp.openVideo(scope.getDevice(), SampleApp.VOD_STREAM_TITLE);
+          SampleApp.tapPlay(scope.getDevice());
+          SampleApp.play(AD_BREAK_WAIT_MS);
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          // Snaps back to the skipped midroll, and seeks on once it has played.
+          SampleApp.seekNearEnd(scope.getDevice());
+          SampleApp.play(AD_BREAK_WAIT_MS);
+          return Unit.INSTANCE;
+        });
+  }
+
+  @Test
+  public void backNavigation() {
+    benchmarkRule.measureRepeated(
+        SampleApp.PACKAGE_NAME,
+        Collections.singletonList(new FrameTimingMetric()),
+        CompilationMode.DEFAULT,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          SampleApp.startClearedWithMockStream(scope);
+          SampleApp.openVideo(scope.getDevice(), SampleApp.VOD_STREAM_TITLE);
+          SampleApp.tapPlay(scope.getDevice());
+          SampleApp.play(FIRST_FRAME_WAIT_MS);
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          SampleApp.navigateBack(scope.getDevice());
+          return Unit.INSTANCE;
+        });
+  }
+}
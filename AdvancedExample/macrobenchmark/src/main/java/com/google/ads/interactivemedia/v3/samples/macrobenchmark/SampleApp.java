@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.macrobenchmark;
+
+import android.os.SystemClock;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+import java.io.IOException;
+import kotlin.Unit;
+
+/** Drives the AdvancedExample app with UI Automator, and names the trace sections it emits. */
+final class SampleApp {
+
+  static final String PACKAGE_NAME = "com.google.ads.interactivemedia.v3.samples.videoplayerapp";
+
+  // Launch extra that makes the app play its local mock stream rather than request streams.
+  private static final String MOCK_STREAM_SERVER_EXTRA = "mock_stream_server";
+
+  // Trace sections emitted by StartupTracer and TraceSections in the app.
+  static final String SDK_INIT_DEFERRED_SECTION = "DAI:SdkInitDeferred";
+  static final String SDK_INITIALIZE_SECTION = "DAI:SDK_INITIALIZE";
+  static final String STREAM_REQUEST_SECTION = "DAI:STREAM_REQUEST";
+  static final String TAP_TO_FIRST_FRAME_SECTION = "DAI:TAP_TO_FIRST_FRAME";
+  static final String AD_BREAK_SECTION = "DAI:AdBreak";
+  static final String SNAPBACK_SECTION = "DAI:Snapback";
+
+  /** A VOD stream with a preroll and midrolls, so that seeks past a midroll snap back. */
+  static final String VOD_STREAM_TITLE = "VOD - HLS - Tears of Steel";
+
+  private static final long UI_TIMEOUT_MS = 10_000;
+
+  /**
+   * Clears the app's data, such as bookmarks, the bandwidth estimate and the segment cache, then
+   * starts it with every video playing the app's local mock stream, whose ad breaks come from the
+   * mock rather than from IMA. The mock's stored sources are kept, so no network access is needed
+   * once they have been downloaded.
+   */
+  static void startClearedWithMockStream(MacrobenchmarkScope scope) {
+    try {
+      scope.getDevice().executeShellCommand("pm clear " + PACKAGE_NAME);
+    } catch (IOException e) {
+      throw new AssertionError("Failed to clear app data", e);
+    }
+    scope.startActivityAndWait(
+        intent -> {
+          intent.putExtra(MOCK_STREAM_SERVER_EXTRA, true);
+          return Unit.INSTANCE;
+        });
+  }
+
+  /** Waits for the playlist to show. */
+  static void waitForPlaylist(UiDevice device) {
+    findObject(device, By.res(PACKAGE_NAME, "videoListView"));
+  }
+
+  /** Opens the video with the given title from the playlist, and waits for its play button. */
+  static void openVideo(UiDevice device, String title) {
+    findObject(device, By.text(title)).click();
+    findObject(device, By.res(PACKAGE_NAME, "playButton"));
+  }
+
+  /** Taps the play button of the open video. */
+  static void tapPlay(UiDevice device) {
+    findObject(device, By.res(PACKAGE_NAME, "playButton")).click();
+  }
+
+  /**
+   * Seeks to near the end of the open video with the player's time bar, past any unplayed ad
+   * break, which makes the app snap back to that break.
+   */
+  static void seekNearEnd(UiDevice device) {
+    UiObject2 videoView = findObject(device, By.res(PACKAGE_NAME, "videoView"));
+    // Show the player controls, then tap the time bar close to its end.
+    videoView.click();
+    UiObject2 timeBar = findObject(device, By.res(PACKAGE_NAME, "exo_progress"));
+    device.click(
+        timeBar.getVisibleBounds().right - timeBar.getVisibleBounds().width() / 10,
+        timeBar.getVisibleBounds().centerY());
+  }
+
+  /** Goes back from the open video to the playlist. */
+  static void navigateBack(UiDevice device) {
+    device.pressBack();
+    waitForPlaylist(device);
+  }
+
+  /**
+   * Lets playback run. The app reports what happens during it, such as ad breaks, through trace
+   * sections rather than UI, so the benchmarks wait a fixed time.
+   */
+  static void play(long durationMs) {
+    SystemClock.sleep(durationMs);
+  }
+
+  private static UiObject2 findObject(UiDevice device, BySelector by) {
+    UiObject2 object = device.wait(Until.findObject(by), UI_TIMEOUT_MS);
+    if (object == null) {
+      throw new AssertionError("Timed out waiting for " + by);
+    }
+    return object;
+  }
+
+  private SampleApp() {}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.ads.interactivemedia.v3.samples.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures cold start of the sample app, along with how long IMA SDK initialization is deferred
+ * after the first frame and how long it then takes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+  private static final int ITERATIONS = 10;
+
+  @Rule public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+  @Test
+  public void coldStart() {
+    benchmarkRule.measureRepeated(
+        SampleApp.PACKAGE_NAME,
+        Arrays.asList(
+            new StartupTimingMetric(),
+            new TraceSectionMetric(SampleApp.SDK_INIT_DEFERRED_SECTION),
+            new TraceSectionMetric(SampleApp.SDK_INITIALIZE_SECTION)),
+        CompilationMode.DEFAULT,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          scope.pressHome();
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          scope.startActivityAndWait();
+          // The SDK is initialized once the main thread goes idle after the first frame.
+          SampleApp.waitForPlaylist(scope.getDevice());
+          scope.getDevice().waitForIdle();
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prints an ad event trace exported by the AdvancedExample's AdEventTrace, one event per line.
+ *
+ * <p>Pull the trace from the device and run the decoder with a JDK, no build needed:
+ *
+ * <pre>
+ * adb exec-out run-as com.google.ads.interactivemedia.v3.samples.videoplayerapp \
+ *     cat files/ad_events.trace &gt; ad_events.trace
+ * java AdEventTraceDecoder.java ad_events.trace
+ * </pre>
+ */
+public class AdEventTraceDecoder {
+
+  private static final int MAGIC = 0x41445452;
+  private static final int VERSION = 1;
+  private static final int NONE = -1;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: java AdEventTraceDecoder.java <trace file>");
+      System.exit(1);
+    }
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not an ad event trace: " + args[0]);
+      }
+      int version = input.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported trace version: " + version);
+      }
+
+      String[] eventTypes = new String[input.readInt()];
+      for (int i = 0; i < eventTypes.length; i++) {
+        eventTypes[i] = input.readUTF();
+      }
+      Map<Integer, String> adIds = new HashMap<>();
+      int adIdCount = input.readInt();
+      for (int i = 0; i < adIdCount; i++) {
+        adIds.put(input.readInt(), input.readUTF());
+      }
+
+      int size = input.readInt();
+      long firstTimestampNs = 0;
+      System.out.println("time_ms\tstream_ms\tcue\tevent\tad_id");
+      for (int i = 0; i < size; i++) {
+        int type = input.readInt();
+        int adIdSequence = input.readInt();
+        long timestampNs = input.readLong();
+        long streamTimeMs = input.readLong();
+        int cuePointIndex = input.readInt();
+        if (i == 0) {
+          firstTimestampNs = timestampNs;
+        }
+        String adId = adIdSequence == NONE ? "-" : adIds.getOrDefault(adIdSequence, "?");
+        System.out.println(
+            String.format(
+                Locale.US,
+                "%.3f\t%d\t%s\t%s\t%s",
+                (timestampNs - firstTimestampNs) / 1e6,
+                streamTimeMs,
+                cuePointIndex == NONE ? "-" : String.valueOf(cuePointIndex),
+                type < eventTypes.length ? eventTypes[type] : String.valueOf(type),
+                adId));
+      }
+    }
+  }
+}
@@ -21,6 +21,8 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.ImageButton;
@@ -38,6 +40,8 @@ public class MyActivity extends Activity {
   private static final String DEFAULT_STREAM_URL =
       "https://storage.googleapis.com/interactive-media-ads/media/bbb.m3u8";
   private static final String APP_LOG_TAG = "ImaDaiExample";
+  // Older log lines are dropped past this length, so the log view stays cheap to lay out.
+  private static final int MAX_LOG_CHARS = 16 * 1024;
   private static final String PLAYER_TYPE = "DAISamplePlayer";
   private static ImaSdkSettings imaSdkSettings;
 
@@ -45,6 +49,7 @@ public class MyActivity extends Activity {
   protected ImageButton playButton;
 
   private boolean contentHasStarted = false;
+  private boolean logScrollPending = false;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -73,9 +78,21 @@ public class MyActivity extends Activity {
           Log.i(APP_LOG_TAG, logMessage);
           if (textView != null) {
             textView.append(logMessage);
+            Editable logText = textView.getEditableText();
+            if (logText.length() > MAX_LOG_CHARS) {
+              // Drop whole lines from the start of the log.
+              int end = TextUtils.indexOf(logText, '\n', logText.length() - MAX_LOG_CHARS);
+              logText.delete(0, end + 1);
+            }
           }
-          if (scrollView != null) {
-            scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
+          // Scroll once for all the messages logged before the next layout.
+          if (scrollView != null && !logScrollPending) {
+            logScrollPending = true;
+            scrollView.post(
+                () -> {
+                  logScrollPending = false;
+                  scrollView.fullScroll(View.FOCUS_DOWN);
+                });
           }
         });
 